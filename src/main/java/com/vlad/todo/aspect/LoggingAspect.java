@@ -14,14 +14,18 @@ import org.springframework.stereotype.Component;
 public class LoggingAspect {
     private static final Logger logger = LoggerFactory.getLogger(LoggingAspect.class);
 
-    @Before("execution(* com.vlad.todo..*(..))")
+    // caches are called on every request and report through CacheStats instead
+    private static final String APPLICATION_METHODS =
+            "execution(* com.vlad.todo..*(..)) && !within(com.vlad.todo.cache..*)";
+
+    @Before(APPLICATION_METHODS)
     public void logBefore(JoinPoint joinPoint) {
         if (logger.isDebugEnabled()) {
             logger.info("Выполняется: {}", joinPoint.getSignature().toShortString());
         }
     }
 
-    @AfterReturning(pointcut = "execution(* com.vlad.todo..*(..))",
+    @AfterReturning(pointcut = APPLICATION_METHODS,
             returning = "result")
     public void logAfterReturning(JoinPoint joinPoint, Object result) {
         if (logger.isDebugEnabled()) {
@@ -30,7 +34,7 @@ public class LoggingAspect {
         }
     }
 
-    @AfterThrowing(pointcut = "execution(* com.vlad.todo..*(..))", throwing = "error")
+    @AfterThrowing(pointcut = APPLICATION_METHODS, throwing = "error")
     public void logAfterThrowing(JoinPoint joinPoint, Throwable error) {
         if (logger.isDebugEnabled()) {
             logger.error("Исключение в: {} с причиной: {}",
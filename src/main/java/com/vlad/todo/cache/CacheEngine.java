@@ -0,0 +1,73 @@
+package com.vlad.todo.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+public abstract class CacheEngine<K, V> {
+
+    private volatile Consumer<EvictedEntry<K, V>> evictionListener = evicted -> { };
+
+    public abstract V get(K key);
+
+    public abstract void put(K key, V value);
+
+    public abstract V remove(K key);
+
+    // does not count as an access; a null result removes the entry
+    public abstract V computeIfPresent(K key, UnaryOperator<V> remapping);
+
+    // removals are not reported as evictions
+    public abstract int removeIf(Predicate<? super V> filter);
+
+    public abstract void clear();
+
+    public abstract int size();
+
+    // each segment is locked only while it is scanned
+    public abstract List<KeyFrequency<K>> hottestKeys(int limit);
+
+    static <K> List<KeyFrequency<K>> hottestFirst(List<KeyFrequency<K>> keys, int limit) {
+        keys.sort(Comparator.comparingInt(KeyFrequency<K>::getFrequency).reversed());
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    // equals size() for entry-bounded engines
+    public long weight() {
+        return size();
+    }
+
+    // called under the segment lock so a write to the same key cannot slip in between
+    void setEvictionListener(Consumer<EvictedEntry<K, V>> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    void notifyEvicted(EvictedEntry<K, V> evicted) {
+        if (evicted != null) {
+            evictionListener.accept(evicted);
+        }
+    }
+
+    void notifyEvicted(List<EvictedEntry<K, V>> evicted) {
+        for (EvictedEntry<K, V> entry : evicted) {
+            evictionListener.accept(entry);
+        }
+    }
+
+    void verifyIntegrity() {
+    }
+
+    static int segmentCount(long capacity, int concurrencyLevel) {
+        long limit = Math.max(1, Math.min(capacity, concurrencyLevel));
+        return Integer.highestOneBit((int) limit);
+    }
+
+    static int segmentIndex(Object key, int segmentMask) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & segmentMask;
+    }
+}
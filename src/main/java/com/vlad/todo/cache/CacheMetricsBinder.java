@@ -0,0 +1,66 @@
+package com.vlad.todo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+// standard Micrometer cache meter names, so existing dashboards pick them up
+@Component
+public class CacheMetricsBinder implements MeterBinder {
+
+    private final List<LfuCache<?>> caches;
+
+    public CacheMetricsBinder(List<LfuCache<?>> caches) {
+        this.caches = caches;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (LfuCache<?> cache : caches) {
+            Tags tags = Tags.of("cache", cache.getName());
+            CacheStats stats = cache.getStats();
+            FunctionCounter.builder("cache.gets", stats, CacheStats::getHits)
+                    .tags(tags).tag("result", "hit")
+                    .description("Number of cache lookups that found a value")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", stats, CacheStats::getMisses)
+                    .tags(tags).tag("result", "miss")
+                    .description("Number of cache lookups that found nothing")
+                    .register(registry);
+            FunctionCounter.builder("cache.puts", stats, CacheStats::getPuts)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.evictions", stats, CacheStats::getEvictions)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.removals", stats, CacheStats::getRemovals)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.expirations", stats, CacheStats::getExpirations)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.loads", stats, CacheStats::getLoads)
+                    .tags(tags).tag("result", "success").register(registry);
+            FunctionCounter.builder("cache.loads", stats, CacheStats::getLoadFailures)
+                    .tags(tags).tag("result", "failure").register(registry);
+            FunctionCounter.builder("cache.refreshes", stats, CacheStats::getRefreshes)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.loads.coalesced", stats, CacheStats::getCoalescedLoads)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("cache.negative.hits", stats, CacheStats::getNegativeHits)
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.negative.size", cache, LfuCache::negativeSize)
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.size", cache, LfuCache::size)
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.weight", cache, LfuCache::weight)
+                    .tags(tags).baseUnit("bytes").register(registry);
+            FunctionCounter.builder("cache.offheap.hits", stats, CacheStats::getOffHeapHits)
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.offheap.size", cache, LfuCache::offHeapSize)
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.offheap.allocated", cache, LfuCache::offHeapBytes)
+                    .tags(tags).baseUnit("bytes").register(registry);
+        }
+    }
+}
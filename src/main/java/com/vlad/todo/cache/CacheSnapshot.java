@@ -0,0 +1,64 @@
+package com.vlad.todo.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// written to a temporary sibling and moved into place, so a crash never leaves a truncated file
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x4C465553;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    private CacheSnapshot() {
+    }
+
+    public static void write(Path file, List<KeyFrequency<Long>> keys) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.size());
+            for (KeyFrequency<Long> key : keys) {
+                out.writeLong(key.getKey());
+                out.writeInt(key.getFrequency());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // a missing file yields an empty list; a count the file cannot hold is rejected unread
+    public static List<KeyFrequency<Long>> read(Path file, int maxKeys) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported cache snapshot: " + file);
+            }
+            int count = in.readInt();
+            if (count < 0 || count > maxKeys || HEADER_BYTES + (long) count * ENTRY_BYTES != size) {
+                throw new IOException("Corrupt cache snapshot: " + file + " claims " + count
+                        + " keys in " + size + " bytes");
+            }
+            List<KeyFrequency<Long>> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(new KeyFrequency<>(in.readLong(), in.readInt()));
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.vlad.todo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// many evictions in the high frequency buckets mean the cache is too small for its hot set
+public class CacheStats {
+
+    static final int HISTOGRAM_BUCKETS = 17;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder offHeapHits = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder[] evictionFrequencies = new LongAdder[HISTOGRAM_BUCKETS];
+
+    public CacheStats() {
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            evictionFrequencies[i] = new LongAdder();
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordOffHeapHit() {
+        offHeapHits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordPut() {
+        puts.increment();
+    }
+
+    void recordRemoval() {
+        removals.increment();
+    }
+
+    void recordRemovals(int count) {
+        removals.add(count);
+    }
+
+    void recordExpiration() {
+        expirations.increment();
+    }
+
+    void recordLoad() {
+        loads.increment();
+    }
+
+    void recordRefresh() {
+        refreshes.increment();
+    }
+
+    void recordLoadFailure() {
+        loadFailures.increment();
+    }
+
+    void recordCoalescedLoad() {
+        coalescedLoads.increment();
+    }
+
+    void recordNegativeHit() {
+        negativeHits.increment();
+    }
+
+    void recordEviction(int frequency) {
+        evictions.increment();
+        evictionFrequencies[bucketOf(frequency)].increment();
+    }
+
+    static int bucketOf(int frequency) {
+        if (frequency <= 0) {
+            return 0;
+        }
+        return Math.min(32 - Integer.numberOfLeadingZeros(frequency), HISTOGRAM_BUCKETS - 1);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // already included in getHits()
+    public long getOffHeapHits() {
+        return offHeapHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getRemovals() {
+        return removals.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    // a subset of misses
+    public long getCoalescedLoads() {
+        return coalescedLoads.sum();
+    }
+
+    // a subset of misses: lookups answered by the negative cache without a load
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = getHits();
+        long requests = hitCount + getMisses();
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    public Map<String, Long> getEvictionFrequencyHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        histogram.put("0", evictionFrequencies[0].sum());
+        histogram.put("1", evictionFrequencies[1].sum());
+        for (int i = 2; i < HISTOGRAM_BUCKETS - 1; i++) {
+            histogram.put((1L << (i - 1)) + "-" + ((1L << i) - 1), evictionFrequencies[i].sum());
+        }
+        int last = HISTOGRAM_BUCKETS - 1;
+        histogram.put((1L << (last - 1)) + "+", evictionFrequencies[last].sum());
+        return histogram;
+    }
+}
@@ -0,0 +1,42 @@
+package com.vlad.todo.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import lombok.Getter;
+
+// members are resolved through UserCache, so renaming a user never makes a group stale
+@Getter
+public class CachedGroup {
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final long version;
+    private final Set<Long> memberIds;
+
+    public CachedGroup(Long id, String name, String description, long version,
+                       Set<Long> memberIds) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.version = version;
+        this.memberIds = Set.copyOf(memberIds);
+    }
+
+    CachedGroup withMember(Long userId) {
+        if (memberIds.contains(userId)) {
+            return this;
+        }
+        Set<Long> updated = new HashSet<>(memberIds);
+        updated.add(userId);
+        return new CachedGroup(id, name, description, version, updated);
+    }
+
+    CachedGroup withoutMember(Long userId) {
+        if (!memberIds.contains(userId)) {
+            return this;
+        }
+        Set<Long> updated = new HashSet<>(memberIds);
+        updated.remove(userId);
+        return new CachedGroup(id, name, description, version, updated);
+    }
+}
@@ -0,0 +1,12 @@
+package com.vlad.todo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EvictedEntry<K, V> {
+    private final K key;
+    private final V value;
+    private final int frequency;
+}
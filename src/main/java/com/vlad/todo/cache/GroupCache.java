@@ -0,0 +1,68 @@
+package com.vlad.todo.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class GroupCache extends LfuCache<CachedGroup> {
+
+    private static final long BYTES_PER_MEMBER = Weigher.REFERENCE_BYTES + 32;
+
+    private final CacheEngine<String, Long> idsByName;
+
+    public GroupCache(@Value("${cache.groups.max-weight-bytes}") long maxWeightBytes,
+                      @Value("${cache.groups.ttl-ms:0}") long ttlMillis,
+                      @Value("${cache.groups.name-index-capacity}") int nameIndexCapacity,
+                      @Value("${cache.negative.capacity:0}") int negativeCapacity,
+                      @Value("${cache.negative.ttl-ms:0}") long negativeTtlMillis) {
+        super("groups", maxWeightBytes, GroupCache::weigh);
+        this.idsByName = new StripedLfuEngine<>(nameIndexCapacity, 16);
+        expireAfterWrite(ttlMillis);
+        enableNegativeCaching(negativeCapacity, negativeTtlMillis);
+    }
+
+    static long weigh(CachedGroup group) {
+        return Weigher.OBJECT_HEADER_BYTES * 2 + 8 + 4 * Weigher.REFERENCE_BYTES
+                + Weigher.stringBytes(group.getName())
+                + Weigher.stringBytes(group.getDescription())
+                + BYTES_PER_MEMBER * group.getMemberIds().size();
+    }
+
+    @Override
+    public void put(Long id, CachedGroup group) {
+        super.put(id, group);
+        idsByName.put(group.getName(), id);
+    }
+
+    @Override
+    public CachedGroup remove(Long id) {
+        CachedGroup removed = super.remove(id);
+        if (removed != null) {
+            idsByName.remove(removed.getName());
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        idsByName.clear();
+    }
+
+    public CachedGroup getByName(String name) {
+        Long id = idsByName.get(name);
+        if (id == null) {
+            return null;
+        }
+        CachedGroup group = get(id);
+        return group != null && group.getName().equals(name) ? group : null;
+    }
+
+    public void addMember(Long groupId, Long userId) {
+        computeIfPresent(groupId, group -> group.withMember(userId));
+    }
+
+    public void removeMember(Long groupId, Long userId) {
+        computeIfPresent(groupId, group -> group.withoutMember(userId));
+    }
+}
@@ -0,0 +1,11 @@
+package com.vlad.todo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class KeyFrequency<K> {
+    private final K key;
+    private final int frequency;
+}
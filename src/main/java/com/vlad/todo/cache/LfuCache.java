@@ -1,86 +1,385 @@
 package com.vlad.todo.cache;
 
-import java.util.HashMap;
-import java.util.Map;
-import lombok.extern.slf4j.Slf4j;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
-@Slf4j
+// storage is pluggable so each cache can be bounded by entries or by bytes
 public abstract class LfuCache<T> {
 
-    private final int capacity;
-    private final Map<Long, Entry<T>> cache = new HashMap<>();
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int MAX_PRELOAD_FREQUENCY = 15;
+    private static final long ENTRY_BYTES =
+            Weigher.OBJECT_HEADER_BYTES + Weigher.REFERENCE_BYTES + Long.BYTES;
 
-    protected static class Entry<T> {
-        T value;
-        int frequency;
+    private final String name;
+    private final CacheEngine<Long, Entry<T>> engine;
+    private final CacheStats stats = new CacheStats();
+    private final ConcurrentHashMap<Long, Load<T>> loads = new ConcurrentHashMap<>();
+    private OffHeapStore<Long, Entry<T>> offHeap;
+    private NegativeCache negatives;
+    private long ttlNanos;
+    private long refreshAfterNanos;
+    private Executor refreshExecutor;
+
+    private static final class Entry<T> {
+        final T value;
+        final long writtenAt;
 
-        Entry(T value) {
+        Entry(T value, long writtenAt) {
             this.value = value;
-            this.frequency = 1;
+            this.writtenAt = writtenAt;
         }
     }
 
-    protected LfuCache(int capacity) {
-        this.capacity = capacity;
+    // a write during the load invalidates it, so its possibly stale result is not cached
+    private static final class Load<T> extends CompletableFuture<T> {
+        volatile boolean invalidated;
+    }
+
+    protected LfuCache(String name, int capacity) {
+        this(name, capacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    protected LfuCache(String name, int capacity, int concurrencyLevel) {
+        this(name, new StripedLfuEngine<>(capacity, concurrencyLevel));
+    }
+
+    protected LfuCache(String name, long maxWeightBytes, Weigher<? super T> weigher) {
+        this(name, new TinyLfuEngine<>(maxWeightBytes,
+                entry -> ENTRY_BYTES + weigher.weigh(entry.value)));
+    }
+
+    private LfuCache(String name, CacheEngine<Long, Entry<T>> engine) {
+        this.name = name;
+        this.engine = engine;
+        engine.setEvictionListener(evicted -> {
+            stats.recordEviction(evicted.getFrequency());
+            OffHeapStore<Long, Entry<T>> tier = offHeap;
+            if (tier != null) {
+                tier.put(evicted.getKey(), evicted.getValue());
+            }
+        });
+    }
+
+    // no-op unless the time is positive
+    protected final void expireAfterWrite(long ttlMillis) {
+        ttlNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+    }
+
+    // keep it shorter than the ttl so entries still being read are replaced before they expire
+    protected final void refreshAheadAfter(long refreshAfterMillis, Executor executor) {
+        if (refreshAfterMillis > 0) {
+            refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterMillis);
+            refreshExecutor = executor;
+        }
+    }
+
+    // no-op when the budget is smaller than one slab
+    protected final void enableOffHeapTier(long maxBytes, Serializer<T> serializer) {
+        if (maxBytes >= OffHeapStore.SLAB_BYTES) {
+            offHeap = new OffHeapStore<>(maxBytes, entrySerializer(serializer));
+        }
+    }
+
+    // no-op unless both limits are positive
+    protected final void enableNegativeCaching(int capacity, long ttlMillis) {
+        if (capacity > 0 && ttlMillis > 0) {
+            negatives = new NegativeCache(capacity, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        }
+    }
+
+    private static <T> Serializer<Entry<T>> entrySerializer(Serializer<T> serializer) {
+        return new Serializer<>() {
+            @Override
+            public void write(Entry<T> entry, DataOutput out) throws IOException {
+                out.writeLong(entry.writtenAt);
+                serializer.write(entry.value, out);
+            }
+
+            @Override
+            public Entry<T> read(DataInput in) throws IOException {
+                long writtenAt = in.readLong();
+                return new Entry<>(serializer.read(in), writtenAt);
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CacheStats getStats() {
+        return stats;
     }
 
     public T get(Long id) {
-        Entry<T> entry = cache.get(id);
+        Entry<T> entry = read(id);
+        return entry == null ? null : entry.value;
+    }
+
+    private Entry<T> read(Long id) {
+        Entry<T> entry = lookup(id);
         if (entry == null) {
-            log.info("❌ LFU Cache: Item NOT found in cache. ID: {}", id);
+            stats.recordMiss();
+        } else {
+            stats.recordHit();
+        }
+        return entry;
+    }
+
+    private Entry<T> lookup(Long id) {
+        Entry<T> entry = engine.get(id);
+        if (entry == null && offHeap != null) {
+            entry = offHeap.remove(id);
+            if (entry != null && !isExpired(entry)) {
+                stats.recordOffHeapHit();
+                engine.put(id, entry);
+                return entry;
+            }
+        }
+        if (entry != null && isExpired(entry)) {
+            engine.remove(id);
+            stats.recordExpiration();
             return null;
         }
+        return entry;
+    }
 
-        entry.frequency++;
+    private boolean isExpired(Entry<T> entry) {
+        return ttlNanos > 0 && System.nanoTime() - entry.writtenAt >= ttlNanos;
+    }
 
-        log.info("✅ LFU Cache: Item found and retrieved from cache. ID: {},"
-                + " Access frequency: {}", id, entry.frequency);
+    // one load per id at a time; concurrent callers wait for it instead of querying again
+    public T get(Long id, Function<Long, T> loader) {
+        Entry<T> entry = read(id);
+        if (entry != null) {
+            if (refreshExecutor != null && System.nanoTime() - entry.writtenAt >= refreshAfterNanos) {
+                refreshAhead(id, entry.value, loader);
+            }
+            return entry.value;
+        }
+        if (negatives != null && negatives.contains(id)) {
+            stats.recordNegativeHit();
+            return null;
+        }
+        Load<T> load = new Load<>();
+        Load<T> inFlight = loads.putIfAbsent(id, load);
+        if (inFlight != null) {
+            stats.recordCoalescedLoad();
+            return await(inFlight);
+        }
+        T value;
+        try {
+            Entry<T> raced = lookup(id);
+            if (raced != null) {
+                value = raced.value;
+            } else if (negatives != null && negatives.contains(id)) {
+                // a load that finished meanwhile found nothing
+                stats.recordNegativeHit();
+                value = null;
+            } else {
+                value = loader.apply(id);
+                stats.recordLoad();
+                if (value != null) {
+                    store(id, value);
+                    if (load.invalidated) {
+                        engine.remove(id);
+                    }
+                } else if (negatives != null) {
+                    negatives.add(id);
+                    if (load.invalidated) {
+                        negatives.remove(id);
+                    }
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(id, load);
+        }
+    }
 
-        return entry.value;
+    // with a saturated executor the entry is left to expire
+    private void refreshAhead(Long id, T current, Function<Long, T> loader) {
+        Load<T> load = new Load<>();
+        if (loads.putIfAbsent(id, load) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(id, loader, load));
+        } catch (RejectedExecutionException e) {
+            loads.remove(id, load);
+            load.complete(current);
+        }
     }
 
-    public void put(Long id, T value) {
-        if (cache.containsKey(id)) {
-            Entry<T> entry = cache.get(id);
-            entry.value = value;
-            entry.frequency++;
-            log.info("🔥 LFU Cache: Item updated in cache. ID: {}, "
-                    + "New frequency: {}", id, entry.frequency);
-        } else {
-            if (cache.size() >= capacity) {
-                evictLeastFrequentlyUsed();
+    private void refresh(Long id, Function<Long, T> loader, Load<T> load) {
+        try {
+            T value = loader.apply(id);
+            stats.recordRefresh();
+            if (value != null) {
+                store(id, value);
+                if (load.invalidated) {
+                    engine.remove(id);
+                }
+            } else if (!load.invalidated) {
+                engine.remove(id);
+                if (negatives != null) {
+                    negatives.add(id);
+                }
             }
-            cache.put(id, new Entry<>(value));
-            log.info("🔥 LFU Cache: New item added to cache. ID: {}", id);
+            load.complete(value);
+        } catch (RuntimeException e) {
+            stats.recordLoadFailure();
+            load.completeExceptionally(e);
+        } catch (Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(id, load);
         }
     }
 
-    private void evictLeastFrequentlyUsed() {
-        Long lfuKey = null;
-        int minFrequency = Integer.MAX_VALUE;
-
-        for (Map.Entry<Long, Entry<T>> entry : cache.entrySet()) {
-            if (entry.getValue().frequency < minFrequency) {
-                minFrequency = entry.getValue().frequency;
-                lfuKey = entry.getKey();
+    private static <T> T await(Load<T> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
             }
+            throw e;
+        }
+    }
+
+    public void put(Long id, T value) {
+        invalidateLoad(id);
+        store(id, value);
+    }
+
+    private void store(Long id, T value) {
+        if (negatives != null) {
+            negatives.remove(id);
+        }
+        if (offHeap != null) {
+            offHeap.remove(id);
+        }
+        engine.put(id, new Entry<>(value, System.nanoTime()));
+        stats.recordPut();
+    }
+
+    // replays accesses so restored hot entries are not evicted first; not counted in stats
+    public void preload(Long id, T value, int frequency) {
+        engine.put(id, new Entry<>(value, System.nanoTime()));
+        for (int i = 1; i < Math.min(frequency, MAX_PRELOAD_FREQUENCY); i++) {
+            engine.get(id);
+        }
+    }
+
+    public List<KeyFrequency<Long>> hottestKeys(int limit) {
+        return engine.hottestKeys(limit);
+    }
+
+    public T remove(Long id) {
+        invalidateLoad(id);
+        if (negatives != null) {
+            negatives.remove(id);
+        }
+        Entry<T> removed = engine.remove(id);
+        if (offHeap != null) {
+            Entry<T> spilled = offHeap.remove(id);
+            removed = removed == null ? spilled : removed;
         }
+        if (removed == null) {
+            return null;
+        }
+        stats.recordRemoval();
+        return removed.value;
+    }
 
-        if (lfuKey != null) {
-            cache.remove(lfuKey);
-            log.info("Evicted item from cache. ID: {},"
-                    + " Frequency at removal: {}", lfuKey, minFrequency);
+    // for writes that touch an unknown set of ids
+    public int removeIf(Predicate<? super T> filter) {
+        loads.values().forEach(load -> load.invalidated = true);
+        int removed = engine.removeIf(entry -> filter.test(entry.value));
+        if (offHeap != null) {
+            removed += offHeap.removeIf(entry -> filter.test(entry.value));
         }
+        stats.recordRemovals(removed);
+        return removed;
     }
 
-    public void remove(Long id) {
-        if (cache.remove(id) != null) {
-            log.info("Item successfully removed from cache. ID: {}", id);
+    // keeps the original write time; an off-heap copy is dropped rather than updated
+    public T computeIfPresent(Long id, UnaryOperator<T> remapping) {
+        invalidateLoad(id);
+        Entry<T> entry = engine.computeIfPresent(id, current -> {
+            T value = remapping.apply(current.value);
+            return value == null ? null : new Entry<>(value, current.writtenAt);
+        });
+        if (entry == null) {
+            if (offHeap != null) {
+                offHeap.remove(id);
+            }
+            return null;
         }
+        return entry.value;
     }
 
     public void clear() {
-        cache.clear();
-        log.info("All items have been successfully cleared from the cache.");
+        loads.values().forEach(load -> load.invalidated = true);
+        engine.clear();
+        if (negatives != null) {
+            negatives.clear();
+        }
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+    }
+
+    private void invalidateLoad(Long id) {
+        Load<T> load = loads.get(id);
+        if (load != null) {
+            load.invalidated = true;
+        }
+    }
+
+    public int size() {
+        return engine.size();
+    }
+
+    public long weight() {
+        return engine.weight();
+    }
+
+    public int negativeSize() {
+        return negatives == null ? 0 : negatives.size();
+    }
+
+    public int offHeapSize() {
+        return offHeap == null ? 0 : offHeap.size();
+    }
+
+    public long offHeapBytes() {
+        return offHeap == null ? 0 : offHeap.allocatedBytes();
+    }
+
+    void verifyIntegrity() {
+        engine.verifyIntegrity();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.vlad.todo.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+// unknown names resolve to null instead of creating an unbounded cache on the fly
+public class LfuCacheManager implements CacheManager {
+
+    private final Map<String, Cache> caches = new LinkedHashMap<>();
+
+    public LfuCacheManager(List<LfuCache<?>> lfuCaches) {
+        for (LfuCache<?> cache : lfuCaches) {
+            caches.put(cache.getName(), new LfuSpringCache(cache));
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.get(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return caches.keySet();
+    }
+}
@@ -0,0 +1,236 @@
+package com.vlad.todo.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// not thread-safe: callers hold the segment lock
+class LfuSegment<K, V> {
+
+    private final int capacity;
+    private final Map<K, Entry<K, V>> entries = new HashMap<>();
+    private final FrequencyNode<K, V> head = new FrequencyNode<>(0);
+
+    static final class Entry<K, V> {
+        final K key;
+        V value;
+        FrequencyNode<K, V> owner;
+        Entry<K, V> prev;
+        Entry<K, V> next;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // entries inside a bucket are kept in LRU order to break frequency ties
+    static final class FrequencyNode<K, V> {
+        final int frequency;
+        FrequencyNode<K, V> prev = this;
+        FrequencyNode<K, V> next = this;
+        Entry<K, V> first;
+        Entry<K, V> last;
+
+        FrequencyNode(int frequency) {
+            this.frequency = frequency;
+        }
+
+        boolean isEmpty() {
+            return first == null;
+        }
+
+        void append(Entry<K, V> entry) {
+            entry.owner = this;
+            entry.prev = last;
+            entry.next = null;
+            if (last == null) {
+                first = entry;
+            } else {
+                last.next = entry;
+            }
+            last = entry;
+        }
+
+        void unlink(Entry<K, V> entry) {
+            if (entry.prev == null) {
+                first = entry.next;
+            } else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null) {
+                last = entry.prev;
+            } else {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            entry.owner = null;
+        }
+    }
+
+    LfuSegment(int capacity) {
+        this.capacity = capacity;
+    }
+
+    V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        incrementFrequency(entry);
+        return entry.value;
+    }
+
+    EvictedEntry<K, V> put(K key, V value) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            incrementFrequency(entry);
+            return null;
+        }
+        if (capacity <= 0) {
+            return null;
+        }
+        EvictedEntry<K, V> evicted = null;
+        if (entries.size() >= capacity) {
+            evicted = evictLeastFrequentlyUsed();
+        }
+        entry = new Entry<>(key, value);
+        FrequencyNode<K, V> first = head.next;
+        if (first == head || first.frequency != 1) {
+            first = insertAfter(head, 1);
+        }
+        first.append(entry);
+        entries.put(key, entry);
+        return evicted;
+    }
+
+    void collectHottest(int limit, List<KeyFrequency<K>> out) {
+        int added = 0;
+        for (FrequencyNode<K, V> node = head.prev; node != head && added < limit; node = node.prev) {
+            for (Entry<K, V> entry = node.last; entry != null && added < limit; entry = entry.prev) {
+                out.add(new KeyFrequency<>(entry.key, node.frequency));
+                added++;
+            }
+        }
+    }
+
+    V remove(K key) {
+        Entry<K, V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        detach(entry);
+        return entry.value;
+    }
+
+    V computeIfPresent(K key, UnaryOperator<V> remapping) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        V value = remapping.apply(entry.value);
+        if (value == null) {
+            remove(key);
+        } else {
+            entry.value = value;
+        }
+        return value;
+    }
+
+    int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Iterator<Entry<K, V>> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry<K, V> entry = it.next();
+            if (filter.test(entry.value)) {
+                it.remove();
+                detach(entry);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    void clear() {
+        entries.clear();
+        head.next = head;
+        head.prev = head;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void incrementFrequency(Entry<K, V> entry) {
+        FrequencyNode<K, V> current = entry.owner;
+        FrequencyNode<K, V> target = current.next;
+        if (target == head || target.frequency != current.frequency + 1) {
+            target = insertAfter(current, current.frequency + 1);
+        }
+        current.unlink(entry);
+        target.append(entry);
+        if (current.isEmpty()) {
+            removeNode(current);
+        }
+    }
+
+    private EvictedEntry<K, V> evictLeastFrequentlyUsed() {
+        FrequencyNode<K, V> lowest = head.next;
+        if (lowest == head) {
+            return null;
+        }
+        Entry<K, V> victim = lowest.first;
+        detach(victim);
+        entries.remove(victim.key);
+        return new EvictedEntry<>(victim.key, victim.value, lowest.frequency);
+    }
+
+    private void detach(Entry<K, V> entry) {
+        FrequencyNode<K, V> owner = entry.owner;
+        owner.unlink(entry);
+        if (owner.isEmpty()) {
+            removeNode(owner);
+        }
+    }
+
+    private FrequencyNode<K, V> insertAfter(FrequencyNode<K, V> node, int frequency) {
+        FrequencyNode<K, V> created = new FrequencyNode<>(frequency);
+        created.prev = node;
+        created.next = node.next;
+        node.next.prev = created;
+        node.next = created;
+        return created;
+    }
+
+    private void removeNode(FrequencyNode<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node;
+        node.next = node;
+    }
+
+    void verifyIntegrity() {
+        int linked = 0;
+        int previousFrequency = 0;
+        for (FrequencyNode<K, V> node = head.next; node != head; node = node.next) {
+            if (node.frequency <= previousFrequency || node.isEmpty()) {
+                throw new IllegalStateException("Broken frequency list at " + node.frequency);
+            }
+            previousFrequency = node.frequency;
+            for (Entry<K, V> entry = node.first; entry != null; entry = entry.next) {
+                if (entry.owner != node || entries.get(entry.key) != entry) {
+                    throw new IllegalStateException("Orphaned entry " + entry.key);
+                }
+                linked++;
+            }
+        }
+        if (linked != entries.size() || (capacity > 0 && linked > capacity)) {
+            throw new IllegalStateException("Segment holds " + entries.size()
+                    + " indexed and " + linked + " linked entries, capacity " + capacity);
+        }
+    }
+}
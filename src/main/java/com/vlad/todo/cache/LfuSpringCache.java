@@ -0,0 +1,82 @@
+package com.vlad.todo.cache;
+
+import java.util.concurrent.Callable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+// nulls are not stored: putting one evicts the key, a null from a loader means a missing id
+class LfuSpringCache implements Cache {
+
+    private final LfuCache<Object> cache;
+
+    @SuppressWarnings("unchecked")
+    LfuSpringCache(LfuCache<?> cache) {
+        this.cache = (LfuCache<Object>) cache;
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return cache;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = cache.get(toId(key));
+        return value == null ? null : new SimpleValueWrapper(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        Object value = cache.get(toId(key));
+        if (type != null && value != null && !type.isInstance(value)) {
+            throw new IllegalStateException(String.format(
+                    "Cached value is not of required type [%s]: %s", type.getName(), value));
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) cache.get(toId(key), id -> {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+        } else {
+            cache.put(toId(key), value);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.remove(toId(key));
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    private Long toId(Object key) {
+        if (key instanceof Number number) {
+            return number.longValue();
+        }
+        throw new IllegalArgumentException(String.format(
+                "Cache %s accepts only numeric ids as keys, got: %s", cache.getName(), key));
+    }
+}
@@ -0,0 +1,41 @@
+package com.vlad.todo.cache;
+
+// bounded on its own, so a scan over missing ids never evicts cached values
+final class NegativeCache {
+
+    private final StripedLfuEngine<Long, Long> deadlines;
+    private final long ttlNanos;
+
+    NegativeCache(int capacity, long ttlNanos) {
+        this.deadlines = new StripedLfuEngine<>(capacity, 16);
+        this.ttlNanos = ttlNanos;
+    }
+
+    boolean contains(Long id) {
+        Long deadline = deadlines.get(id);
+        if (deadline == null) {
+            return false;
+        }
+        if (deadline - System.nanoTime() > 0) {
+            return true;
+        }
+        deadlines.remove(id);
+        return false;
+    }
+
+    void add(Long id) {
+        deadlines.put(id, System.nanoTime() + ttlNanos);
+    }
+
+    void remove(Long id) {
+        deadlines.remove(id);
+    }
+
+    void clear() {
+        deadlines.clear();
+    }
+
+    int size() {
+        return deadlines.size();
+    }
+}
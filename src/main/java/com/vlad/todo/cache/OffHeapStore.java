@@ -0,0 +1,290 @@
+package com.vlad.todo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+// fixed-size chunks per size class avoid fragmentation; records above 64 KB are not stored
+public class OffHeapStore<K, V> {
+
+    static final int SLAB_BYTES = 1 << 20;
+    private static final int MIN_CHUNK_BYTES = 64;
+    private static final int MAX_CHUNK_BYTES = 64 * 1024;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final long maxBytes;
+    private final Serializer<V> serializer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final List<SizeClass<K>> slabOwners = new ArrayList<>();
+    private final SizeClass<K>[] sizeClasses;
+    private final Map<K, SizeClass<K>> classOfKey = new HashMap<>();
+
+    private static final class SizeClass<K> {
+        final int chunkBytes;
+        final LinkedHashMap<K, Long> addresses = new LinkedHashMap<>();
+        long[] freeChunks = new long[16];
+        int freeCount;
+        int slabCount;
+
+        SizeClass(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        void release(long address) {
+            if (freeCount == freeChunks.length) {
+                freeChunks = Arrays.copyOf(freeChunks, freeCount * 2);
+            }
+            freeChunks[freeCount++] = address;
+        }
+    }
+
+    public OffHeapStore(long maxBytes, Serializer<V> serializer) {
+        this.maxBytes = maxBytes;
+        this.serializer = serializer;
+        int classCount = Integer.numberOfTrailingZeros(MAX_CHUNK_BYTES / MIN_CHUNK_BYTES) + 1;
+        @SuppressWarnings("unchecked") // generic arrays cannot be created directly
+        SizeClass<K>[] sizeClasses = (SizeClass<K>[]) new SizeClass<?>[classCount];
+        this.sizeClasses = sizeClasses;
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new SizeClass<>(MIN_CHUNK_BYTES << i);
+        }
+    }
+
+    // false means the record did not fit
+    public boolean put(K key, V value) {
+        byte[] record = serialize(value);
+        SizeClass<K> sizeClass = sizeClassFor(record.length + LENGTH_BYTES);
+        lock.lock();
+        try {
+            release(key);
+            if (sizeClass == null) {
+                return false;
+            }
+            long address = allocate(sizeClass);
+            if (address < 0) {
+                return false;
+            }
+            ByteBuffer slab = slabs.get(slabOf(address));
+            int offset = offsetOf(address);
+            slab.putInt(offset, record.length);
+            slab.put(offset + LENGTH_BYTES, record);
+            sizeClass.addresses.put(key, address);
+            classOfKey.put(key, sizeClass);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public V remove(K key) {
+        byte[] record;
+        lock.lock();
+        try {
+            SizeClass<K> sizeClass = classOfKey.remove(key);
+            if (sizeClass == null) {
+                return null;
+            }
+            long address = sizeClass.addresses.remove(key);
+            record = read(address);
+            sizeClass.release(address);
+        } finally {
+            lock.unlock();
+        }
+        return deserialize(record);
+    }
+
+    // deserializes every record, so it costs a scan of the whole tier
+    public int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        lock.lock();
+        try {
+            for (Iterator<Map.Entry<K, SizeClass<K>>> it = classOfKey.entrySet().iterator();
+                    it.hasNext(); ) {
+                Map.Entry<K, SizeClass<K>> entry = it.next();
+                SizeClass<K> sizeClass = entry.getValue();
+                long address = sizeClass.addresses.get(entry.getKey());
+                if (filter.test(deserialize(read(address)))) {
+                    it.remove();
+                    sizeClass.release(sizeClass.addresses.remove(entry.getKey()));
+                    removed++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return removed;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            classOfKey.clear();
+            slabs.clear();
+            slabOwners.clear();
+            for (SizeClass<K> sizeClass : sizeClasses) {
+                sizeClass.addresses.clear();
+                sizeClass.freeCount = 0;
+                sizeClass.slabCount = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return classOfKey.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // counts whole slabs, including chunks that are free
+    public long allocatedBytes() {
+        lock.lock();
+        try {
+            return (long) slabs.size() * SLAB_BYTES;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(K key) {
+        SizeClass<K> previous = classOfKey.remove(key);
+        if (previous != null) {
+            previous.release(previous.addresses.remove(key));
+        }
+    }
+
+    private byte[] read(long address) {
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        byte[] record = new byte[slab.getInt(offset)];
+        slab.get(offset + LENGTH_BYTES, record);
+        return record;
+    }
+
+    private long allocate(SizeClass<K> sizeClass) {
+        if (sizeClass.freeCount == 0 && (long) (slabs.size() + 1) * SLAB_BYTES <= maxBytes) {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_BYTES));
+            slabOwners.add(null);
+            carve(slabs.size() - 1, sizeClass);
+        } else if (sizeClass.freeCount == 0) {
+            rebalance(sizeClass);
+        }
+        if (sizeClass.freeCount == 0) {
+            Iterator<Map.Entry<K, Long>> oldest = sizeClass.addresses.entrySet().iterator();
+            if (!oldest.hasNext()) {
+                return -1;
+            }
+            Map.Entry<K, Long> victim = oldest.next();
+            oldest.remove();
+            classOfKey.remove(victim.getKey());
+            sizeClass.release(victim.getValue());
+        }
+        return sizeClass.freeChunks[--sizeClass.freeCount];
+    }
+
+    // with the budget used up, a class owning far fewer slabs takes one from the largest owner
+    private void rebalance(SizeClass<K> sizeClass) {
+        SizeClass<K> donor = null;
+        for (SizeClass<K> candidate : sizeClasses) {
+            if (candidate != sizeClass && (donor == null || candidate.slabCount > donor.slabCount)) {
+                donor = candidate;
+            }
+        }
+        if (donor == null || donor.slabCount == 0
+                || (sizeClass.slabCount > 0 && donor.slabCount < sizeClass.slabCount + 2)) {
+            return;
+        }
+        int slabIndex = coldestSlab(donor);
+        for (Iterator<Map.Entry<K, Long>> it = donor.addresses.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<K, Long> entry = it.next();
+            if (slabOf(entry.getValue()) == slabIndex) {
+                it.remove();
+                classOfKey.remove(entry.getKey());
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < donor.freeCount; i++) {
+            if (slabOf(donor.freeChunks[i]) != slabIndex) {
+                donor.freeChunks[kept++] = donor.freeChunks[i];
+            }
+        }
+        donor.freeCount = kept;
+        donor.slabCount--;
+        carve(slabIndex, sizeClass);
+    }
+
+    // the slab holding the donor's oldest record
+    private int coldestSlab(SizeClass<K> donor) {
+        Iterator<Long> oldest = donor.addresses.values().iterator();
+        if (oldest.hasNext()) {
+            return slabOf(oldest.next());
+        }
+        return slabOwners.indexOf(donor);
+    }
+
+    private void carve(int slabIndex, SizeClass<K> sizeClass) {
+        slabOwners.set(slabIndex, sizeClass);
+        sizeClass.slabCount++;
+        for (int offset = SLAB_BYTES - sizeClass.chunkBytes; offset >= 0;
+                offset -= sizeClass.chunkBytes) {
+            sizeClass.release(address(slabIndex, offset));
+        }
+    }
+
+    private SizeClass<K> sizeClassFor(int recordBytes) {
+        for (SizeClass<K> sizeClass : sizeClasses) {
+            if (recordBytes <= sizeClass.chunkBytes) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    private static long address(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private byte[] serialize(V value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            serializer.write(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private V deserialize(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            return serializer.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
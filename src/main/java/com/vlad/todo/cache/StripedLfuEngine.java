@@ -0,0 +1,152 @@
+package com.vlad.todo.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// eviction is exact LFU only per segment; a concurrency level of 1 makes it exact
+public class StripedLfuEngine<K, V> extends CacheEngine<K, V> {
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    private static final class Segment<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LfuSegment<K, V> store;
+
+        Segment(int capacity) {
+            this.store = new LfuSegment<>(capacity);
+        }
+    }
+
+    public StripedLfuEngine(int capacity, int concurrencyLevel) {
+        int segmentCount = segmentCount(capacity, concurrencyLevel);
+        int total = Math.max(0, capacity);
+        int segmentCapacity = total / segmentCount;
+        int remainder = total % segmentCount;
+        @SuppressWarnings("unchecked") // generic arrays cannot be created directly
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        this.segments = segments;
+        // the remainder goes one slot each to the first segments, so the total stays exact
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(i < remainder ? segmentCapacity + 1 : segmentCapacity);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        return segments[segmentIndex(key, segmentMask)];
+    }
+
+    @Override
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.store.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            notifyEvicted(segment.store.put(key, value));
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.store.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, UnaryOperator<V> remapping) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.store.computeIfPresent(key, remapping);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                removed += segment.store.removeIf(filter);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<KeyFrequency<K>> hottestKeys(int limit) {
+        List<KeyFrequency<K>> keys = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.collectHottest(limit, keys);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return hottestFirst(keys, limit);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.store.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    void verifyIntegrity() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.verifyIntegrity();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+}
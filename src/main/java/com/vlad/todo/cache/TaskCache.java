@@ -0,0 +1,70 @@
+package com.vlad.todo.cache;
+
+import com.vlad.todo.dto.TaskDtoResponse;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TaskCache extends LfuCache<TaskDtoResponse> {
+
+    private static final long LOCAL_DATE_BYTES = 24;
+    private static final long BOXED_LONG_BYTES = 16;
+
+    static final Serializer<TaskDtoResponse> SERIALIZER = new Serializer<>() {
+        @Override
+        public void write(TaskDtoResponse task, DataOutput out) throws IOException {
+            Serializer.writeNullableLong(out, task.getId());
+            Serializer.writeString(out, task.getTitle());
+            Serializer.writeString(out, task.getContent());
+            Serializer.writeNullableBoolean(out, task.getIsCompleted());
+            Serializer.writeNullableLong(out, task.getDeadlineDate() == null
+                    ? null : task.getDeadlineDate().toEpochDay());
+            Serializer.writeNullableBoolean(out, task.getIsImportant());
+            Serializer.writeNullableLong(out, task.getUserId());
+            out.writeLong(task.getVersion());
+        }
+
+        @Override
+        public TaskDtoResponse read(DataInput in) throws IOException {
+            TaskDtoResponse task = new TaskDtoResponse();
+            task.setId(Serializer.readNullableLong(in));
+            task.setTitle(Serializer.readString(in));
+            task.setContent(Serializer.readString(in));
+            task.setIsCompleted(Serializer.readNullableBoolean(in));
+            Long deadlineEpochDay = Serializer.readNullableLong(in);
+            task.setDeadlineDate(deadlineEpochDay == null
+                    ? null : LocalDate.ofEpochDay(deadlineEpochDay));
+            task.setIsImportant(Serializer.readNullableBoolean(in));
+            task.setUserId(Serializer.readNullableLong(in));
+            task.setVersion(in.readLong());
+            return task;
+        }
+    };
+
+    public TaskCache(@Value("${cache.tasks.max-weight-bytes}") long maxWeightBytes,
+                     @Value("${cache.tasks.ttl-ms:0}") long ttlMillis,
+                     @Value("${cache.tasks.refresh-after-ms:0}") long refreshAfterMillis,
+                     @Qualifier("executor") Executor executor,
+                     @Value("${cache.tasks.off-heap-bytes:0}") long offHeapBytes,
+                     @Value("${cache.negative.capacity:0}") int negativeCapacity,
+                     @Value("${cache.negative.ttl-ms:0}") long negativeTtlMillis) {
+        super("tasks", maxWeightBytes, TaskCache::weigh);
+        expireAfterWrite(ttlMillis);
+        refreshAheadAfter(refreshAfterMillis, executor);
+        enableOffHeapTier(offHeapBytes, SERIALIZER);
+        enableNegativeCaching(negativeCapacity, negativeTtlMillis);
+    }
+
+    static long weigh(TaskDtoResponse task) {
+        return Weigher.OBJECT_HEADER_BYTES + 8 + 7 * Weigher.REFERENCE_BYTES
+                + 2 * BOXED_LONG_BYTES + LOCAL_DATE_BYTES
+                + Weigher.stringBytes(task.getTitle())
+                + Weigher.stringBytes(task.getContent());
+    }
+}
@@ -0,0 +1,172 @@
+package com.vlad.todo.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// unlike StripedLfuEngine popularity decays, so entries no longer requested age out
+public class TinyLfuEngine<K, V> extends CacheEngine<K, V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    private static final class Segment<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final TinyLfuSegment<K, V> store;
+
+        Segment(long maximumWeight, Weigher<? super V> weigher) {
+            this.store = new TinyLfuSegment<>(maximumWeight, weigher);
+        }
+    }
+
+    public TinyLfuEngine(long maximumWeight, Weigher<? super V> weigher) {
+        this(maximumWeight, weigher, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public TinyLfuEngine(long maximumWeight, Weigher<? super V> weigher, int concurrencyLevel) {
+        int segmentCount = segmentCount(maximumWeight, concurrencyLevel);
+        long segmentWeight = Math.max(0, maximumWeight) / segmentCount;
+        @SuppressWarnings("unchecked") // generic arrays cannot be created directly
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        this.segments = segments;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentWeight, weigher);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        return segments[segmentIndex(key, segmentMask)];
+    }
+
+    @Override
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.store.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.store.put(key, value);
+            notifyEvicted(segment.store.drainEvicted());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.store.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, UnaryOperator<V> remapping) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            V value = segment.store.computeIfPresent(key, remapping);
+            notifyEvicted(segment.store.drainEvicted());
+            return value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                removed += segment.store.removeIf(filter);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<KeyFrequency<K>> hottestKeys(int limit) {
+        List<KeyFrequency<K>> keys = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.collectHottest(limit, keys);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return hottestFirst(keys, limit);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.store.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                weight += segment.store.weight();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    void verifyIntegrity() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.store.verifyIntegrity();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+}
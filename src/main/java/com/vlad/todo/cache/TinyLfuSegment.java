@@ -0,0 +1,308 @@
+package com.vlad.todo.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// not thread-safe: callers hold the segment lock
+class TinyLfuSegment<K, V> {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int INITIAL_SKETCH_CAPACITY = 16;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher<? super V> weigher;
+    private final Map<K, Node<K, V>> nodes = new HashMap<>();
+    private final FrequencySketch<K> sketch = new FrequencySketch<>();
+    private final AccessQueue<K, V> window = new AccessQueue<>(Region.WINDOW);
+    private final AccessQueue<K, V> probation = new AccessQueue<>(Region.PROBATION);
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>(Region.PROTECTED);
+    private List<EvictedEntry<K, V>> evicted;
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    static final class Node<K, V> {
+        final K key;
+        V value;
+        long weight;
+        Region region;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class AccessQueue<K, V> {
+        final Region region;
+        Node<K, V> first;
+        Node<K, V> last;
+        long weight;
+
+        AccessQueue(Region region) {
+            this.region = region;
+        }
+
+        boolean isEmpty() {
+            return first == null;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.region = region;
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            first = null;
+            last = null;
+            weight = 0;
+        }
+    }
+
+    TinyLfuSegment(long maximumWeight, Weigher<? super V> weigher) {
+        this.maximumWeight = Math.max(0, maximumWeight);
+        this.windowMaximum = Math.max(1, this.maximumWeight * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (this.maximumWeight - windowMaximum) * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+        sketch.ensureCapacity(INITIAL_SKETCH_CAPACITY);
+    }
+
+    V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        onHit(node);
+        return node.value;
+    }
+
+    void put(K key, V value) {
+        long weight = Math.max(0, weigher.weigh(value));
+        Node<K, V> node = nodes.get(key);
+        if (weight > maximumWeight) {
+            if (node != null) {
+                unlink(node);
+                nodes.remove(key);
+            }
+            return;
+        }
+        sketch.increment(key);
+        if (node != null) {
+            queueOf(node).weight += weight - node.weight;
+            node.weight = weight;
+            node.value = value;
+            onHit(node);
+        } else {
+            node = new Node<>(key, value, weight);
+            nodes.put(key, node);
+            window.addLast(node);
+            if (nodes.size() > sketch.capacity()) {
+                sketch.ensureCapacity(nodes.size());
+            }
+        }
+        evict();
+    }
+
+    V remove(K key) {
+        Node<K, V> node = nodes.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    V computeIfPresent(K key, UnaryOperator<V> remapping) {
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        V value = remapping.apply(node.value);
+        long weight = value == null ? 0 : Math.max(0, weigher.weigh(value));
+        if (value == null || weight > maximumWeight) {
+            remove(key);
+            return null;
+        }
+        queueOf(node).weight += weight - node.weight;
+        node.weight = weight;
+        node.value = value;
+        evict();
+        return nodes.get(key) == node ? value : null;
+    }
+
+    int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Iterator<Node<K, V>> it = nodes.values().iterator(); it.hasNext(); ) {
+            Node<K, V> node = it.next();
+            if (filter.test(node.value)) {
+                it.remove();
+                unlink(node);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    void clear() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+    }
+
+    void collectHottest(int limit, List<KeyFrequency<K>> out) {
+        List<KeyFrequency<K>> all = new ArrayList<>(nodes.size());
+        for (K key : nodes.keySet()) {
+            all.add(new KeyFrequency<>(key, sketch.frequency(key)));
+        }
+        out.addAll(CacheEngine.hottestFirst(all, limit));
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    long weight() {
+        return window.weight + probation.weight + protectedQueue.weight;
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROTECTED -> protectedQueue.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                while (protectedQueue.weight > protectedMaximum && protectedQueue.first != node) {
+                    Node<K, V> demoted = protectedQueue.first;
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        while (window.weight > windowMaximum) {
+            Node<K, V> candidate = window.first;
+            window.remove(candidate);
+            probation.addLast(candidate);
+        }
+        while (weight() > maximumWeight) {
+            if (probation.isEmpty()) {
+                if (!protectedQueue.isEmpty()) {
+                    Node<K, V> demoted = protectedQueue.first;
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                    continue;
+                }
+                evictNode(window.first);
+                continue;
+            }
+            Node<K, V> victim = probation.first;
+            Node<K, V> candidate = probation.last;
+            if (victim == candidate
+                    || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        unlink(node);
+        nodes.remove(node.key);
+        if (evicted == null) {
+            evicted = new ArrayList<>();
+        }
+        evicted.add(new EvictedEntry<>(node.key, node.value, sketch.frequency(node.key)));
+    }
+
+    List<EvictedEntry<K, V>> drainEvicted() {
+        if (evicted == null) {
+            return List.of();
+        }
+        List<EvictedEntry<K, V>> drained = evicted;
+        evicted = null;
+        return drained;
+    }
+
+    private void unlink(Node<K, V> node) {
+        queueOf(node).remove(node);
+    }
+
+    private AccessQueue<K, V> queueOf(Node<K, V> node) {
+        return switch (node.region) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            case PROTECTED -> protectedQueue;
+        };
+    }
+
+    void verifyIntegrity() {
+        long linkedWeight = 0;
+        int linked = 0;
+        for (AccessQueue<K, V> queue : List.of(window, probation, protectedQueue)) {
+            long queueWeight = 0;
+            for (Node<K, V> node = queue.first; node != null; node = node.next) {
+                if (node.region != queue.region || nodes.get(node.key) != node) {
+                    throw new IllegalStateException("Orphaned node " + node.key);
+                }
+                queueWeight += node.weight;
+                linked++;
+            }
+            if (queueWeight != queue.weight) {
+                throw new IllegalStateException(queue.region + " weight is " + queue.weight
+                        + " but nodes weigh " + queueWeight);
+            }
+            linkedWeight += queueWeight;
+        }
+        if (linked != nodes.size() || linkedWeight > maximumWeight) {
+            throw new IllegalStateException("Segment holds " + nodes.size() + " indexed and "
+                    + linked + " linked nodes weighing " + linkedWeight);
+        }
+    }
+}
@@ -1,11 +1,60 @@
 package com.vlad.todo.cache;
 
 import com.vlad.todo.dto.UserDtoResponse;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class UserCache extends LfuCache<UserDtoResponse> {
-    public UserCache() {
-        super(3);
+
+    static final Serializer<UserDtoResponse> SERIALIZER = new Serializer<>() {
+        @Override
+        public void write(UserDtoResponse user, DataOutput out) throws IOException {
+            out.writeLong(user.getId());
+            Serializer.writeString(out, user.getFirstName());
+            Serializer.writeString(out, user.getLastName());
+            Serializer.writeString(out, user.getEmail());
+            Serializer.writeString(out, user.getPhone());
+            out.writeLong(user.getVersion());
+        }
+
+        @Override
+        public UserDtoResponse read(DataInput in) throws IOException {
+            UserDtoResponse user = new UserDtoResponse();
+            user.setId(in.readLong());
+            user.setFirstName(Serializer.readString(in));
+            user.setLastName(Serializer.readString(in));
+            user.setEmail(Serializer.readString(in));
+            user.setPhone(Serializer.readString(in));
+            user.setVersion(in.readLong());
+            return user;
+        }
+    };
+
+    public UserCache(@Value("${cache.users.max-weight-bytes}") long maxWeightBytes,
+                     @Value("${cache.users.ttl-ms:0}") long ttlMillis,
+                     @Value("${cache.users.refresh-after-ms:0}") long refreshAfterMillis,
+                     @Qualifier("executor") Executor executor,
+                     @Value("${cache.users.off-heap-bytes:0}") long offHeapBytes,
+                     @Value("${cache.negative.capacity:0}") int negativeCapacity,
+                     @Value("${cache.negative.ttl-ms:0}") long negativeTtlMillis) {
+        super("users", maxWeightBytes, UserCache::weigh);
+        expireAfterWrite(ttlMillis);
+        refreshAheadAfter(refreshAfterMillis, executor);
+        enableOffHeapTier(offHeapBytes, SERIALIZER);
+        enableNegativeCaching(negativeCapacity, negativeTtlMillis);
+    }
+
+    static long weigh(UserDtoResponse user) {
+        return Weigher.OBJECT_HEADER_BYTES + 2 * 8 + 4 * Weigher.REFERENCE_BYTES
+                + Weigher.stringBytes(user.getFirstName())
+                + Weigher.stringBytes(user.getLastName())
+                + Weigher.stringBytes(user.getEmail())
+                + Weigher.stringBytes(user.getPhone());
     }
 }
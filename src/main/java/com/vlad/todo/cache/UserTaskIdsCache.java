@@ -0,0 +1,42 @@
+package com.vlad.todo.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// lists are immutable and replaced whole, so readers never see a half-updated one
+@Component
+public class UserTaskIdsCache extends LfuCache<List<Long>> {
+
+    private static final long BYTES_PER_ID = Weigher.REFERENCE_BYTES + 16;
+
+    public UserTaskIdsCache(@Value("${cache.user-tasks.max-weight-bytes}") long maxWeightBytes,
+                            @Value("${cache.user-tasks.ttl-ms:0}") long ttlMillis) {
+        super("user-tasks", maxWeightBytes,
+                ids -> Weigher.OBJECT_HEADER_BYTES * 2 + BYTES_PER_ID * ids.size());
+        expireAfterWrite(ttlMillis);
+    }
+
+    public void putTaskIds(Long userId, List<Long> taskIds) {
+        put(userId, List.copyOf(taskIds));
+    }
+
+    public void addTask(Long userId, Long taskId) {
+        computeIfPresent(userId, ids -> {
+            if (ids.contains(taskId)) {
+                return ids;
+            }
+            List<Long> updated = new ArrayList<>(ids.size() + 1);
+            updated.addAll(ids);
+            updated.add(taskId);
+            return List.copyOf(updated);
+        });
+    }
+
+    public void removeTask(Long userId, Long taskId) {
+        computeIfPresent(userId, ids -> ids.contains(taskId)
+                ? ids.stream().filter(id -> !id.equals(taskId)).toList()
+                : ids);
+    }
+}
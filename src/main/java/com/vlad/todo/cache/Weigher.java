@@ -0,0 +1,17 @@
+package com.vlad.todo.cache;
+
+@FunctionalInterface
+public interface Weigher<V> {
+
+    long OBJECT_HEADER_BYTES = 16;
+    long REFERENCE_BYTES = 8;
+
+    long weigh(V value);
+
+    static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return OBJECT_HEADER_BYTES * 2 + 8 + 2L * value.length();
+    }
+}
@@ -1,16 +1,20 @@
 package com.vlad.todo.config;
 
+import com.vlad.todo.cache.LfuCache;
+import com.vlad.todo.cache.LfuCacheManager;
+import java.util.List;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableCaching
+@EnableScheduling
 public class CacheConfig {
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("users");
+    public CacheManager cacheManager(List<LfuCache<?>> caches) {
+        return new LfuCacheManager(caches);
     }
 }
@@ -0,0 +1,66 @@
+package com.vlad.todo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaLagGuard replicaLagGuard(
+            @Value("${datasource.replica.max-lag-ms:1000}") long maxLagMs) {
+        return new ReplicaLagGuard(maxLagMs);
+    }
+
+    // lets the routing data source tell transactions that wrote from those that only read
+    @Bean
+    public HibernatePropertiesCustomizer writeMarkingStatementInspector() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new WriteMarkingStatementInspector());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${datasource.replica.urls}") List<String> replicaUrls,
+                                 @Value("${datasource.replica.username:${spring.datasource.username:}}")
+                                 String username,
+                                 @Value("${datasource.replica.password:${spring.datasource.password:}}")
+                                 String password,
+                                 ReplicaLagGuard replicaLagGuard) {
+        DataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setReadOnly(true);
+            replica.setPoolName("replica-" + replicas.size());
+            replicas.add(replica);
+        }
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replicas, replicaLagGuard));
+    }
+}
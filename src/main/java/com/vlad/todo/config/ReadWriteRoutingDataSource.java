@@ -0,0 +1,133 @@
+package com.vlad.todo.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// needs LazyConnectionDataSourceProxy: the read-only flag is set only after the transaction starts
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica-";
+    private static final String WRITE_TRACKED = ReadWriteRoutingDataSource.class.getName()
+            + ".WRITE_TRACKED";
+    private static final String WRITE_MARKED = ReadWriteRoutingDataSource.class.getName()
+            + ".WRITE_MARKED";
+    private static final String PRIMARY_REQUIRED = ReadWriteRoutingDataSource.class.getName()
+            + ".PRIMARY_REQUIRED";
+
+    private final DataSource primary;
+    private final int replicaCount;
+    private final ReplicaLagGuard lagGuard;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                      ReplicaLagGuard lagGuard) {
+        this.primary = primary;
+        this.replicaCount = replicas.size();
+        this.lagGuard = lagGuard;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteOnCommit();
+            return PRIMARY;
+        }
+        if (replicaCount == 0 || TransactionSynchronizationManager.hasResource(PRIMARY_REQUIRED)
+                || lagGuard.wroteRecently()) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+    }
+
+    // an unavailable replica falls back to the primary instead of failing the read
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target == primary) {
+            return primary.getConnection();
+        }
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            log.warn("Replica is unavailable, reading from the primary: {}", e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target == primary) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            return target.getConnection(username, password);
+        } catch (SQLException e) {
+            log.warn("Replica is unavailable, reading from the primary: {}", e.getMessage());
+            return primary.getConnection(username, password);
+        }
+    }
+
+    // called for each modifying statement; only a transaction marked here counts as a write
+    public static void markWrite() {
+        bindForTransaction(WRITE_MARKED);
+    }
+
+    // must be called before the transaction's first statement, which picks the connection
+    public static void usePrimary() {
+        bindForTransaction(PRIMARY_REQUIRED);
+    }
+
+    private static void bindForTransaction(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+    }
+
+    private void recordWriteOnCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_TRACKED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_TRACKED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (TransactionSynchronizationManager.hasResource(WRITE_MARKED)) {
+                    lagGuard.recordWrite();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TRACKED);
+            }
+        });
+    }
+}
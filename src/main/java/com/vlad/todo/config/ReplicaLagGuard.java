@@ -0,0 +1,71 @@
+package com.vlad.todo.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+// keeps a client's reads on the primary after its own write, until replicas catch up;
+// a request without a client id, principal or session is never pinned, since a peer address
+// behind a proxy is shared by every client
+public class ReplicaLagGuard {
+    public static final String CLIENT_HEADER = "X-Client-Id";
+    static final int PURGE_THRESHOLD = 10_000;
+
+    private final long maxLagMs;
+    private final LongSupplier clock;
+    private final Map<String, Long> lastWriteAt = new ConcurrentHashMap<>();
+
+    public ReplicaLagGuard(long maxLagMs) {
+        this(maxLagMs, System::currentTimeMillis);
+    }
+
+    ReplicaLagGuard(long maxLagMs, LongSupplier clock) {
+        this.maxLagMs = maxLagMs;
+        this.clock = clock;
+    }
+
+    public void recordWrite() {
+        String client = currentClient();
+        if (client == null || maxLagMs <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        lastWriteAt.put(client, now);
+        if (lastWriteAt.size() > PURGE_THRESHOLD) {
+            lastWriteAt.values().removeIf(writtenAt -> now - writtenAt >= maxLagMs);
+        }
+    }
+
+    public boolean wroteRecently() {
+        String client = currentClient();
+        if (client == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteAt.get(client);
+        return writtenAt != null && clock.getAsLong() - writtenAt < maxLagMs;
+    }
+
+    private static String currentClient() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String client = request.getHeader(CLIENT_HEADER);
+        if (client != null && !client.isBlank()) {
+            return "client:" + client;
+        }
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        HttpSession session = request.getSession(false);
+        return session != null ? "session:" + session.getId() : null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.vlad.todo.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// anything but a plain SELECT is treated as a write, so an unusual statement errs toward the primary
+public class WriteMarkingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        if (!isQuery(sql)) {
+            ReadWriteRoutingDataSource.markWrite();
+        }
+        return sql;
+    }
+
+    static boolean isQuery(String sql) {
+        int start = 0;
+        while (start < sql.length()) {
+            if (Character.isWhitespace(sql.charAt(start))) {
+                start++;
+            } else if (sql.startsWith("/*", start)) {
+                int end = sql.indexOf("*/", start + 2);
+                start = end < 0 ? sql.length() : end + 2;
+            } else {
+                break;
+            }
+        }
+        return sql.regionMatches(true, start, "select", 0, "select".length());
+    }
+}
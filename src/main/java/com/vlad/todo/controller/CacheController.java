@@ -0,0 +1,40 @@
+package com.vlad.todo.controller;
+
+import com.vlad.todo.dto.CacheStatsResponse;
+import com.vlad.todo.service.CacheService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Кэши", description = "API для просмотра статистики кэшей")
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+    private final CacheService cacheService;
+
+    public CacheController(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @Operation(summary = "Получить статистику всех кэшей",
+            description = "Возвращает попадания, промахи, вытеснения и размер каждого кэша")
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsResponse>> allStats() {
+        return ResponseEntity.ok(cacheService.findAllStats());
+    }
+
+    @Operation(summary = "Получить статистику кэша",
+            description = "Возвращает статистику кэша по его названию")
+    @GetMapping("/stats/{name}")
+    public ResponseEntity<CacheStatsResponse> statsByName(
+            @Parameter(description = "Название кэша")
+            @PathVariable String name) {
+        return ResponseEntity.ok(cacheService.findStatsByName(name));
+    }
+}
@@ -0,0 +1,44 @@
+package com.vlad.todo.controller;
+
+import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.exception.PreconditionFailedException;
+
+// a group's tag also covers its members; If-Match compares only the part before the dot
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String of(GroupDtoResponse group) {
+        int membersHash = 1;
+        for (UserDtoResponse user : group.getUsers()) {
+            membersHash = 31 * membersHash + Long.hashCode(user.getId());
+            membersHash = 31 * membersHash + Long.hashCode(user.getVersion());
+        }
+        return "\"" + group.getVersion() + "." + Integer.toHexString(membersHash) + "\"";
+    }
+
+    // weak and malformed tags can never match a version
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException(
+                    "Заголовок If-Match должен содержать один ETag в кавычках");
+        }
+        String value = tag.substring(1, tag.length() - 1);
+        int dot = value.indexOf('.');
+        try {
+            return Long.parseLong(dot < 0 ? value : value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("Некорректный ETag в заголовке If-Match");
+        }
+    }
+}
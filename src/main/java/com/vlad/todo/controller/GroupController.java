@@ -2,6 +2,8 @@ package com.vlad.todo.controller;
 
 import com.vlad.todo.dto.GroupDtoRequest;
 import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.dto.MembershipChangeResponse;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.UserDtoResponse;
 import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.service.GroupService;
@@ -11,6 +13,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -40,6 +43,17 @@ public class GroupController {
         return ResponseEntity.ok(groupService.findAll());
     }
 
+    @Operation(summary = "Получить страницу групп",
+            description = "Возвращает группы в порядке возрастания ID, начиная после курсора")
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<GroupDtoResponse>> groupsPage(
+            @Parameter(description = "Курсор из предыдущего ответа (пусто для первой страницы)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы")
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(groupService.findPage(cursor, size));
+    }
+
     @Operation(summary = "Создать новую группу",
             description = "Создает новую группу и возвращает её данные")
     @PostMapping("/saveGroup")
@@ -50,20 +64,26 @@ public class GroupController {
     }
 
     @Operation(summary = "Обновить группу",
-            description = "Обновляет информацию об группе по её ID и возвращает обновлённые данные")
+            description = "Обновляет информацию об группе по её ID и возвращает обновлённые "
+                    + "данные; с заголовком If-Match возвращает 412, если группа уже изменена")
     @PutMapping("/{id}")
     public ResponseEntity<GroupDtoResponse> updateGroup(
             @Parameter(description = "ID группы")
             @PathVariable long id,
+            @Parameter(description = "ETag группы для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Parameter(description = "Обновленные данные группы")
             @RequestBody GroupDtoRequest groupDtoRequest) {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        return ResponseEntity.ok(groupService.update(id, groupDtoRequest));
+        GroupDtoResponse updatedGroup = groupService.update(id, groupDtoRequest,
+                EntityTags.expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTags.of(updatedGroup)).body(updatedGroup);
     }
 
-    @Operation(summary = "Получить группу по ID", description = "Возвращает группу по её ID")
+    @Operation(summary = "Получить группу по ID", description = "Возвращает группу по её ID; "
+            + "с заголовком If-None-Match возвращает 304, если группа и её участники не изменились")
     @GetMapping("/{id}")
     public ResponseEntity<GroupDtoResponse> findGroupById(
             @Parameter(description = "ID группы")
@@ -71,18 +91,51 @@ public class GroupController {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        return ResponseEntity.ok(groupService.findById(id));
+        GroupDtoResponse group = groupService.findById(id);
+        return ResponseEntity.ok().eTag(EntityTags.of(group)).body(group);
     }
 
-    @Operation(summary = "Удалить группу", description = "Удаляет группу по её ID")
+    @Operation(summary = "Удалить группу", description = "Удаляет группу по её ID; "
+            + "с заголовком If-Match возвращает 412, если группа уже изменена")
     @DeleteMapping("/deleteGroup/{id}")
     public ResponseEntity<Void> deleteGroupById(
             @Parameter(description = "ID группы")
-            @PathVariable long id) {
+            @PathVariable long id,
+            @Parameter(description = "ETag группы для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        groupService.deleteById(id);
+        groupService.deleteById(id, EntityTags.expectedVersion(ifMatch));
         return ResponseEntity.ok().build();
     }
+
+    @Operation(summary = "Добавить пользователей в группу",
+            description = "Добавляет в группу пользователей с указанными ID; "
+                    + "уже состоящие в группе и несуществующие пропускаются")
+    @PostMapping("/{id}/members")
+    public ResponseEntity<MembershipChangeResponse> addMembers(
+            @Parameter(description = "ID группы")
+            @PathVariable long id,
+            @Parameter(description = "ID пользователей")
+            @RequestBody List<Long> userIds) {
+        if (id < 1) {
+            throw new InvalidInputException("Id должно быть больше 0");
+        }
+        return ResponseEntity.ok(groupService.addMembers(id, userIds));
+    }
+
+    @Operation(summary = "Удалить пользователей из группы",
+            description = "Удаляет из группы пользователей с указанными ID")
+    @DeleteMapping("/{id}/members")
+    public ResponseEntity<MembershipChangeResponse> removeMembers(
+            @Parameter(description = "ID группы")
+            @PathVariable long id,
+            @Parameter(description = "ID пользователей")
+            @RequestBody List<Long> userIds) {
+        if (id < 1) {
+            throw new InvalidInputException("Id должно быть больше 0");
+        }
+        return ResponseEntity.ok(groupService.removeMembers(id, userIds));
+    }
 }
\ No newline at end of file
@@ -1,18 +1,33 @@
 package com.vlad.todo.controller;
 
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.ImportReport;
+import com.vlad.todo.dto.PageResponse;
+import com.vlad.todo.dto.TaskChangesResponse;
 import com.vlad.todo.dto.TaskDtoRequest;
 import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.TaskFilter;
+import com.vlad.todo.dto.TaskPatchRequest;
 import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.service.DataFormat;
+import com.vlad.todo.service.ExportService;
+import com.vlad.todo.service.TaskChangeService;
+import com.vlad.todo.service.TaskImportService;
 import com.vlad.todo.service.TaskService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Tag(name = "Задачи", description = "API для управления задачами у пользователей")
 @RestController
@@ -20,27 +35,81 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/tasks")
 public class TaskController {
     private final TaskService taskService;
+    private final ExportService exportService;
+    private final TaskImportService taskImportService;
+    private final TaskChangeService taskChangeService;
 
     @Autowired
-    public TaskController(TaskService taskService) {
+    public TaskController(TaskService taskService, ExportService exportService,
+                          TaskImportService taskImportService,
+                          TaskChangeService taskChangeService) {
         this.taskService = taskService;
+        this.exportService = exportService;
+        this.taskImportService = taskImportService;
+        this.taskChangeService = taskChangeService;
     }
 
-    @Operation(summary = "Получить все задачи", description =
-                    "Возвращает список всех задач с возможностью фильтрации по статусу завершения")
+    @Operation(summary = "Получить задачи по фильтру", description =
+                    "Возвращает задачи, отфильтрованные по статусу, важности, пользователю, "
+                    + "периоду дедлайна и началу заголовка; без фильтров возвращает все задачи")
     @GetMapping
     public ResponseEntity<List<TaskDtoResponse>> tasksByFilter(
-            @Parameter(description =
-                    "Статус завершения задач (true - завершенные, false - незавершенные)")
-            @RequestParam(required = false) Boolean completed) {
-        List<TaskDtoResponse> tasks = taskService.findAllTasks();
-        if (completed != null) {
-            tasks = tasks.stream()
-                    .filter(task -> task.getIsCompleted() != null
-                            && task.getIsCompleted() == completed)
-                    .toList();
-        }
-        return ResponseEntity.ok(tasks);
+            @ParameterObject TaskFilter filter) {
+        return ResponseEntity.ok(taskService.findTasks(filter));
+    }
+
+    @Operation(summary = "Получить страницу задач",
+            description = "Возвращает задачи в порядке возрастания ID, начиная после курсора")
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<TaskDtoResponse>> tasksPage(
+            @Parameter(description = "Курсор из предыдущего ответа (пусто для первой страницы)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы")
+            @RequestParam(required = false) Integer size,
+            @ParameterObject TaskFilter filter) {
+        return ResponseEntity.ok(taskService.findTasksPage(cursor, size, filter));
+    }
+
+    @Operation(summary = "Получить изменения задач",
+            description = "Возвращает задачи, измененные и удаленные после токена, и новый токен; "
+                    + "без токена возвращает только токен, после которого нужно загрузить "
+                    + "задачи целиком. Устаревший токен отклоняется с кодом 410")
+    @GetMapping("/changes")
+    public ResponseEntity<TaskChangesResponse> taskChanges(
+            @Parameter(description = "Токен из предыдущего ответа (пусто для начала синхронизации)")
+            @RequestParam(required = false) String since,
+            @Parameter(description = "ID пользователя, чьи задачи синхронизируются")
+            @RequestParam(required = false) Long userId,
+            @Parameter(description = "Максимальное количество изменений в ответе")
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(taskChangeService.findChanges(since, userId, size));
+    }
+
+    @Operation(summary = "Экспортировать все задачи",
+            description = "Потоково выгружает все задачи в формате NDJSON или CSV")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTasks(
+            @Parameter(description = "Формат выгрузки: ndjson или csv")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        DataFormat dataFormat = DataFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(dataFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"tasks." + dataFormat.getExtension() + "\"")
+                .body(out -> exportService.exportTasks(dataFormat, out));
+    }
+
+    @Operation(summary = "Импортировать задачи",
+            description = "Потоково загружает задачи из тела запроса в формате NDJSON или CSV "
+                    + "(с заголовком) и возвращает скорость загрузки и ошибки по номерам строк")
+    @PostMapping("/import")
+    public ResponseEntity<ImportReport> importTasks(
+            @Parameter(description = "Формат данных: ndjson или csv")
+            @RequestParam(defaultValue = "ndjson") String format,
+            InputStream body) throws IOException {
+        ImportReport report = taskImportService.importTasks(DataFormat.from(format), body);
+        return ResponseEntity.status(report.getFailed() == 0 ? HttpStatus.CREATED
+                : HttpStatus.MULTI_STATUS).body(report);
     }
 
     @Operation(summary = "Получить задачи по пользователю",
@@ -65,22 +134,55 @@ public class TaskController {
         return ResponseEntity.status(HttpStatus.CREATED).body(savedTask);
     }
 
+    @Operation(summary = "Создать несколько задач",
+            description = "Создает задачи одним пакетом и возвращает результат по каждой строке")
+    @PostMapping("/bulk")
+    public ResponseEntity<List<BulkItemResult<TaskDtoResponse>>> createTasks(
+            @Parameter(description = "Данные новых задач")
+            @RequestBody List<TaskDtoRequest> taskDtoRequests) {
+        return bulkResponse(taskService.createTasks(taskDtoRequests), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Обновить несколько задач",
+            description = "Частично обновляет задачи по их ID и возвращает результат по каждой строке")
+    @PatchMapping("/bulk")
+    public ResponseEntity<List<BulkItemResult<TaskDtoResponse>>> updateTasks(
+            @Parameter(description = "ID задач, обновляемые поля и, при необходимости, ожидаемые версии")
+            @RequestBody List<TaskPatchRequest> patches) {
+        return bulkResponse(taskService.updateTasks(patches), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Удалить несколько задач",
+            description = "Удаляет задачи по списку ID и возвращает результат по каждому ID")
+    @DeleteMapping("/bulk")
+    public ResponseEntity<List<BulkItemResult<Long>>> deleteTasks(
+            @Parameter(description = "ID удаляемых задач")
+            @RequestBody List<Long> ids) {
+        return bulkResponse(taskService.deleteTasks(ids), HttpStatus.OK);
+    }
+
     @Operation(summary = "Обновить задачу",
-            description = "Обновляет задачу по её ID и возвращает обновленные данные")
+            description = "Обновляет задачу по её ID и возвращает обновленные данные; "
+                    + "с заголовком If-Match возвращает 412, если задача уже изменена")
     @PutMapping("/{id}")
     public ResponseEntity<TaskDtoResponse> updateTask(
             @Parameter(description = "ID задачи")
             @PathVariable long id,
+            @Parameter(description = "ETag задачи для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Parameter(description = "Обновленные данные задачи")
             @RequestBody TaskDtoRequest taskDto) {
         if (id < 1) {
             throw new InvalidInputException("Id должен быть больше 0");
         }
-        return ResponseEntity.ok(taskService.updateTask(id, taskDto));
+        TaskDtoResponse updatedTask = taskService.updateTask(id, taskDto,
+                EntityTags.expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTags.of(updatedTask.getVersion())).body(updatedTask);
     }
 
     @Operation(summary = "Получить задачу по ID",
-            description = "Возвращает задачу по её уникальному идентификатору")
+            description = "Возвращает задачу по её уникальному идентификатору; "
+                    + "с заголовком If-None-Match возвращает 304, если задача не изменилась")
     @GetMapping("/{id}")
     public ResponseEntity<TaskDtoResponse> findTaskById(
             @Parameter(description = "ID задачи")
@@ -88,19 +190,29 @@ public class TaskController {
         if (id < 1) {
             throw new InvalidInputException("Id должен быть больше 0");
         }
-        return ResponseEntity.ok(taskService.findTaskById(id));
+        TaskDtoResponse task = taskService.findTaskById(id);
+        return ResponseEntity.ok().eTag(EntityTags.of(task.getVersion())).body(task);
     }
 
     @Operation(summary = "Удалить задачу",
-            description = "Удаляет задачу по её ID")
+            description = "Удаляет задачу по её ID; с заголовком If-Match возвращает 412, "
+                    + "если задача уже изменена")
     @DeleteMapping("/deleteTask/{id}")
     public ResponseEntity<Void> deleteTaskById(
             @Parameter(description = "ID задачи")
-            @PathVariable long id) {
+            @PathVariable long id,
+            @Parameter(description = "ETag задачи для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (id < 1) {
             throw new InvalidInputException("Id должен быть больше 0");
         }
-        taskService.deleteTaskById(id);
+        taskService.deleteTaskById(id, EntityTags.expectedVersion(ifMatch));
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+
+    private static <T> ResponseEntity<List<BulkItemResult<T>>> bulkResponse(
+            List<BulkItemResult<T>> results, HttpStatus allSucceeded) {
+        boolean success = results.stream().allMatch(BulkItemResult::isSuccess);
+        return ResponseEntity.status(success ? allSucceeded : HttpStatus.MULTI_STATUS).body(results);
+    }
+}
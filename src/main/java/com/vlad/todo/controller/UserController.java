@@ -1,9 +1,13 @@
 package com.vlad.todo.controller;
 
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.UserDtoRequest;
 import com.vlad.todo.dto.UserDtoResponse;
 import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.service.DataFormat;
+import com.vlad.todo.service.ExportService;
 import com.vlad.todo.service.GroupService;
 import com.vlad.todo.service.UserService;
 import com.vlad.todo.service.VisitCounterService;
@@ -14,9 +18,11 @@ import jakarta.validation.Valid;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @CrossOrigin(origins = "http://localhost:3000")
@@ -27,14 +33,16 @@ public class UserController {
     private final UserService userService;
     private final GroupService groupService;
     private final VisitCounterService visitCounterService;
+    private final ExportService exportService;
 
 
     @Autowired
     public UserController(UserService userService, GroupService groupService,
-                          VisitCounterService visitCounterService) {
+                          VisitCounterService visitCounterService, ExportService exportService) {
         this.userService = userService;
         this.groupService = groupService;
         this.visitCounterService = visitCounterService;
+        this.exportService = exportService;
     }
 
     @Operation(summary = "Получить всех пользователей",
@@ -45,6 +53,32 @@ public class UserController {
         return ResponseEntity.ok(userService.findAll());
     }
 
+    @Operation(summary = "Получить страницу пользователей",
+            description = "Возвращает пользователей в порядке возрастания ID, начиная после курсора")
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<UserDtoResponse>> usersPage(
+            @Parameter(description = "Курсор из предыдущего ответа (пусто для первой страницы)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы")
+            @RequestParam(required = false) Integer size) {
+        visitCounterService.increment();
+        return ResponseEntity.ok(userService.findPage(cursor, size));
+    }
+
+
+    @Operation(summary = "Экспортировать всех пользователей",
+            description = "Потоково выгружает всех пользователей в формате NDJSON или CSV")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @Parameter(description = "Формат выгрузки: ndjson или csv")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        DataFormat dataFormat = DataFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(dataFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"users." + dataFormat.getExtension() + "\"")
+                .body(out -> exportService.exportUsers(dataFormat, out));
+    }
 
     @Operation(summary = "Создать пользователя",
             description = "Создает нового пользователя и возвращает его данные")
@@ -69,7 +103,8 @@ public class UserController {
     }
 
     @Operation(summary = "Получить пользователя по ID",
-            description = "Возвращает пользователя по его уникальному идентификатору")
+            description = "Возвращает пользователя по его уникальному идентификатору; "
+                    + "с заголовком If-None-Match возвращает 304, если пользователь не изменился")
     @GetMapping("/{id}")
     public ResponseEntity<UserDtoResponse> findUserById(
             @Parameter(description = "ID пользователя")
@@ -77,34 +112,43 @@ public class UserController {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        return ResponseEntity.ok(userService.findById(id));
+        UserDtoResponse user = userService.findById(id);
+        return ResponseEntity.ok().eTag(EntityTags.of(user.getVersion())).body(user);
     }
 
 
     @Operation(summary = "Обновить пользователя",
-            description = "Обновляет информацию о пользователе по его ID")
+            description = "Обновляет информацию о пользователе по его ID; с заголовком "
+                    + "If-Match возвращает 412, если пользователь уже изменен")
     @PutMapping("/{id}")
     public ResponseEntity<UserDtoResponse> updateUser(
             @Parameter(description = "ID пользователя")
             @PathVariable long id,
+            @Parameter(description = "ETag пользователя для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Parameter(description = "Обновленные данные пользователя")
             @RequestBody UserDtoRequest userDtoRequest) {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        return ResponseEntity.ok(userService.updateUser(id, userDtoRequest));
+        UserDtoResponse updatedUser = userService.updateUser(id, userDtoRequest,
+                EntityTags.expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTags.of(updatedUser.getVersion())).body(updatedUser);
     }
 
     @Operation(summary = "Удалить пользователя",
-            description = "Удаляет пользователя по его ID")
+            description = "Удаляет пользователя по его ID; с заголовком If-Match возвращает "
+                    + "412, если пользователь уже изменен")
     @DeleteMapping("/deleteUser/{id}")
     public ResponseEntity<Void> deleteUser(
             @Parameter(description = "ID пользователя")
-            @PathVariable long id) {
+            @PathVariable long id,
+            @Parameter(description = "ETag пользователя для условного изменения (If-Match)")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (id < 1) {
             throw new InvalidInputException("Id должно быть больше 0");
         }
-        userService.deleteUserById(id);
+        userService.deleteUserById(id, EntityTags.expectedVersion(ifMatch));
         return ResponseEntity.ok().build();
     }
 
@@ -139,14 +183,16 @@ public class UserController {
     }
 
     @Operation(summary = "Создать нескольких пользователей",
-            description = "Создает новых пользователей и возвращает их данные")
+            description = "Создает новых пользователей и возвращает результат по каждой строке: "
+                    + "201 для созданных, 400 и 409 для отклоненных")
     @PostMapping("/saveAll")
-    public ResponseEntity<List<UserDtoResponse>> saveAllUsers(
+    public ResponseEntity<List<BulkItemResult<UserDtoResponse>>> saveAllUsers(
             @Parameter(description = "Данные новых пользователей")
-            @Valid @RequestBody List<UserDtoRequest> userDtoRequests) {
-        log.info("here");
-        List<UserDtoResponse> savedUsers = userService.saveAll(userDtoRequests);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedUsers);
+            @RequestBody List<UserDtoRequest> userDtoRequests) {
+        List<BulkItemResult<UserDtoResponse>> results = userService.saveAll(userDtoRequests);
+        boolean allCreated = results.stream().allMatch(BulkItemResult::isSuccess);
+        return ResponseEntity.status(allCreated ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                .body(results);
     }
 
 
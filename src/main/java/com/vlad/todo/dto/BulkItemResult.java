@@ -0,0 +1,28 @@
+package com.vlad.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// index is the row's position in the request
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult<T> {
+    private int index;
+    private int status;
+    private T item;
+    private String error;
+
+    public static <T> BulkItemResult<T> success(int index, int status, T item) {
+        return new BulkItemResult<>(index, status, item, null);
+    }
+
+    public static <T> BulkItemResult<T> failure(int index, int status, String error) {
+        return new BulkItemResult<>(index, status, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
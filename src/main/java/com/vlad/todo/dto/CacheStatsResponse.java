@@ -0,0 +1,28 @@
+package com.vlad.todo.dto;
+
+import java.util.Map;
+import lombok.Data;
+
+@Data
+public class CacheStatsResponse {
+    private String name;
+    private int size;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long offHeapHits;
+    private double hitRate;
+    private long puts;
+    private long evictions;
+    private long removals;
+    private long expirations;
+    private long loads;
+    private long refreshes;
+    private long loadFailures;
+    private long coalescedLoads;
+    private long negativeHits;
+    private int negativeSize;
+    private int offHeapSize;
+    private long offHeapBytes;
+    private Map<String, Long> evictionFrequencyHistogram;
+}
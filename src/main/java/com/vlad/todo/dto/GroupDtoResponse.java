@@ -1,12 +1,25 @@
 package com.vlad.todo.dto;
 
+import java.util.ArrayList;
 import java.util.List;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
 public class GroupDtoResponse {
     private Long id;
     private String name;
     private String description;
+    private long version;
     private List<UserDtoResponse> users;
+
+    // for projection queries, which select the members separately
+    public GroupDtoResponse(Long id, String name, String description, long version) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.version = version;
+        this.users = new ArrayList<>();
+    }
 }
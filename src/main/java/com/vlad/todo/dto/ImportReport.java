@@ -0,0 +1,17 @@
+package com.vlad.todo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+// index in errors is the line number in the uploaded file
+@Data
+public class ImportReport {
+    private long processed;
+    private long imported;
+    private long failed;
+    private long elapsedMs;
+    private long rowsPerSecond;
+    private List<BulkItemResult<Void>> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+}
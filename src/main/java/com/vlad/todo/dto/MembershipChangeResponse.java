@@ -0,0 +1,12 @@
+package com.vlad.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MembershipChangeResponse {
+    private long groupId;
+    private int requested;
+    private int affected;
+}
@@ -0,0 +1,15 @@
+package com.vlad.todo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TaskChangesResponse {
+    private List<TaskDtoResponse> changed;
+    // also tasks moved away from the requested user
+    private List<Long> deleted;
+    private String nextToken;
+    private boolean hasMore;
+}
@@ -1,9 +1,13 @@
 package com.vlad.todo.dto;
 
 import java.time.LocalDate;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class TaskDtoResponse {
     private Long id;
     private String title;
@@ -12,4 +16,5 @@ public class TaskDtoResponse {
     private LocalDate deadlineDate;
     private Boolean isImportant;
     private Long userId;
+    private long version;
 }
@@ -0,0 +1,29 @@
+package com.vlad.todo.dto;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import java.time.LocalDate;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+@Data
+public class TaskFilter {
+    @Parameter(description = "Статус завершения задач (true - завершенные, false - незавершенные)")
+    private Boolean completed;
+
+    @Parameter(description = "Важность задачи")
+    private Boolean important;
+
+    @Parameter(description = "ID пользователя")
+    private Long userId;
+
+    @Parameter(description = "Дедлайн не раньше указанной даты (yyyy-MM-dd)")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate deadlineFrom;
+
+    @Parameter(description = "Дедлайн не позже указанной даты (yyyy-MM-dd)")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate deadlineTo;
+
+    @Parameter(description = "Начало заголовка задачи")
+    private String titlePrefix;
+}
@@ -0,0 +1,27 @@
+package com.vlad.todo.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.time.LocalDate;
+import lombok.Data;
+
+// null fields keep their current values; a version, when given, must match the stored one
+@Data
+public class TaskPatchRequest {
+    @Min(value = 1, message = "Id не может быть меньше 1")
+    @NotNull(message = "Id задачи должен быть указан")
+    private Long id;
+
+    @Size(max = 50, message = "Длина заголовка слишком большая")
+    private String title;
+    private String content;
+    private Boolean isCompleted;
+    private LocalDate deadlineDate;
+    private Boolean isImportant;
+
+    @Min(value = 1, message = "Id не может быть меньше 1")
+    private Long userId;
+
+    private Long version;
+}
@@ -1,12 +1,17 @@
 package com.vlad.todo.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class UserDtoResponse {
     private long id;
     private String firstName;
     private String lastName;
     private String email;
     private String phone;
+    private long version;
 }
@@ -1,10 +1,18 @@
 package com.vlad.todo.mapper;
 
+import com.vlad.todo.cache.CachedGroup;
 import com.vlad.todo.dto.*;
 import com.vlad.todo.model.Group;
 import com.vlad.todo.model.User;
+import com.vlad.todo.repository.GroupMemberRow;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -25,12 +33,45 @@ public class GroupMapper {
         groupDtoResponse.setName(group.getName());
         groupDtoResponse.setDescription(group.getDescription());
         groupDtoResponse.setId(group.getId());
+        groupDtoResponse.setVersion(group.getVersion());
 
-        List<UserDtoResponse> usersDtoResponse = new ArrayList<>();
+        List<UserDtoResponse> usersDtoResponse = new ArrayList<>(group.getUsers().size());
         for (User user : group.getUsers()) {
             usersDtoResponse.add(userMapper.toDto(user));
         }
+        usersDtoResponse.sort(Comparator.comparingLong(UserDtoResponse::getId));
         groupDtoResponse.setUsers(usersDtoResponse);
         return groupDtoResponse;
     }
+
+    public void attachMembers(List<GroupDtoResponse> groups, List<GroupMemberRow> memberRows) {
+        Map<Long, GroupDtoResponse> byId = groups.stream()
+                .collect(Collectors.toMap(GroupDtoResponse::getId, Function.identity()));
+        for (GroupMemberRow row : memberRows) {
+            GroupDtoResponse group = byId.get(row.groupId());
+            if (group != null) {
+                group.getUsers().add(new UserDtoResponse(row.userId(), row.firstName(),
+                        row.lastName(), row.email(), row.phone(), row.version()));
+            }
+        }
+    }
+
+    public CachedGroup toCached(Group group) {
+        Set<Long> memberIds = new HashSet<>();
+        for (User user : group.getUsers()) {
+            memberIds.add(user.getId());
+        }
+        return new CachedGroup(group.getId(), group.getName(), group.getDescription(),
+                group.getVersion(), memberIds);
+    }
+
+    public GroupDtoResponse toDto(CachedGroup group, List<UserDtoResponse> users) {
+        GroupDtoResponse groupDtoResponse = new GroupDtoResponse();
+        groupDtoResponse.setName(group.getName());
+        groupDtoResponse.setDescription(group.getDescription());
+        groupDtoResponse.setId(group.getId());
+        groupDtoResponse.setVersion(group.getVersion());
+        groupDtoResponse.setUsers(users);
+        return groupDtoResponse;
+    }
 }
@@ -17,6 +17,7 @@ public class TaskMapper {
         taskDtoResponse.setIsImportant(task.getIsImportant());
         taskDtoResponse.setIsCompleted(task.getIsCompleted());
         taskDtoResponse.setUserId(task.getUser().getId());
+        taskDtoResponse.setVersion(task.getVersion());
         return taskDtoResponse;
     }
 
@@ -32,6 +32,7 @@ public class UserMapper {
         userDtoResponse.setFirstName(user.getFirstName());
         userDtoResponse.setLastName(user.getLastName());
         userDtoResponse.setPhone(user.getPhone());
+        userDtoResponse.setVersion(user.getVersion());
         return userDtoResponse;
     }
 }
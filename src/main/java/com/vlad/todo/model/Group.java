@@ -2,9 +2,10 @@ package com.vlad.todo.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Getter
@@ -21,6 +22,10 @@ public class Group {
     @Column(nullable = false, length = 200)
     private String description;
     private LocalDate createdDate = LocalDate.now();
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 
     @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.MERGE})
     @JoinTable(
@@ -28,18 +33,18 @@ public class Group {
             joinColumns = @JoinColumn(name = "group_id"),
             inverseJoinColumns = @JoinColumn(name = "user_id")
     )
-    private List<User> users = new ArrayList<>();
+    private Set<User> users = new HashSet<>();
 
     public void addUser(User user) {
-        if (!users.contains(user)) {
-            users.add(user);
+        if (users.add(user)) {
             user.getGroups().add(this);
         }
     }
 
     public void removeUser(User user) {
-        users.remove(user);
-        user.getGroups().remove(this);
+        if (users.remove(user)) {
+            user.getGroups().remove(this);
+        }
     }
 
 }
@@ -0,0 +1,34 @@
+package com.vlad.todo.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// a tombstone means the task is gone or no longer belongs to userId
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "task_changes", indexes = {
+        @Index(name = "idx_task_changes_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_task_changes_task_id", columnList = "task_id, id")})
+public class TaskChange {
+    // not pooled, so ids follow insertion order
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_changes_seq")
+    @SequenceGenerator(name = "task_changes_seq", sequenceName = "task_changes_seq",
+            allocationSize = 1)
+    private Long id;
+    @Column(name = "task_id", nullable = false)
+    private Long taskId;
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    @Column(nullable = false)
+    private boolean deleted;
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
@@ -0,0 +1,6 @@
+package com.vlad.todo.repository;
+
+// selected straight from the join table, so user entities are not loaded
+public record GroupMemberRow(Long groupId, long userId, String firstName, String lastName,
+                             String email, String phone, long version) {
+}
@@ -1,13 +1,81 @@
 package com.vlad.todo.repository;
 
+import com.vlad.todo.dto.GroupDtoResponse;
 import com.vlad.todo.model.Group;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface GroupRepository extends JpaRepository<Group, Long> {
+    String SELECT_DTO = "SELECT new com.vlad.todo.dto.GroupDtoResponse("
+            + "g.id, g.name, g.description, g.version) FROM Group g";
+    String SELECT_MEMBER_ROW = "SELECT new com.vlad.todo.repository.GroupMemberRow("
+            + "g.id, u.id, u.firstName, u.lastName, u.email, u.phone, u.version)"
+            + " FROM Group g JOIN g.users u";
+
+    @Override
+    @EntityGraph(attributePaths = "users")
+    List<Group> findAll();
+
+    @EntityGraph(attributePaths = "users")
     Optional<Group> findById(long id);
 
+    @EntityGraph(attributePaths = "users")
     Optional<Group> findByName(String name);
 
     void deleteById(long id);
+
+    // writes the join table directly instead of loading the group's member collection
+    @Modifying
+    @Query(value = "INSERT INTO user_group (group_id, user_id) SELECT :groupId, u.id FROM users u"
+            + " WHERE u.id IN (:userIds) AND NOT EXISTS (SELECT 1 FROM user_group ug"
+            + " WHERE ug.group_id = :groupId AND ug.user_id = u.id)", nativeQuery = true)
+    int addMembers(@Param("groupId") long groupId, @Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_group WHERE group_id = :groupId AND user_id IN (:userIds)",
+            nativeQuery = true)
+    int removeMembers(@Param("groupId") long groupId, @Param("userIds") Collection<Long> userIds);
+
+    @Query(value = "SELECT group_id FROM user_group WHERE user_id = :userId", nativeQuery = true)
+    List<Long> findGroupIdsByMember(@Param("userId") long userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_group WHERE user_id = :userId", nativeQuery = true)
+    int removeMemberFromAllGroups(@Param("userId") long userId);
+
+    @Query(SELECT_DTO + " ORDER BY g.id")
+    List<GroupDtoResponse> findAllDtos();
+
+    @Query(SELECT_DTO + " WHERE g.id > :cursor ORDER BY g.id")
+    List<GroupDtoResponse> findDtoPageAfter(@Param("cursor") long cursor, Pageable pageable);
+
+    @Query(SELECT_MEMBER_ROW + " ORDER BY u.id")
+    List<GroupMemberRow> findAllMemberRows();
+
+    @Query(SELECT_MEMBER_ROW + " WHERE g.id IN :groupIds ORDER BY u.id")
+    List<GroupMemberRow> findMemberRows(@Param("groupIds") Collection<Long> groupIds);
+
+    @Query("SELECT g.version FROM Group g WHERE g.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Group g SET g.name = COALESCE(:name, g.name),"
+            + " g.description = COALESCE(:description, g.description),"
+            + " g.version = g.version + 1"
+            + " WHERE g.id = :id AND (:version IS NULL OR g.version = :version)")
+    int updatePartially(@Param("id") long id, @Param("name") String name,
+                        @Param("description") String description,
+                        @Param("version") Long version);
+
+    // Hibernate clears the group's user_group rows in the same call, before the group row
+    @Modifying
+    @Query("DELETE FROM Group g WHERE g.id = :id AND (:version IS NULL OR g.version = :version)")
+    int removeById(@Param("id") long id, @Param("version") Long version);
 }
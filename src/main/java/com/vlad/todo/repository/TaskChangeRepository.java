@@ -0,0 +1,57 @@
+package com.vlad.todo.repository;
+
+import com.vlad.todo.model.TaskChange;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface TaskChangeRepository extends JpaRepository<TaskChange, Long> {
+
+    // for deletes, run before the DELETE while the owner is still in the row
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO task_changes (id, task_id, user_id, deleted, changed_at)"
+            + " SELECT nextval('task_changes_seq'), t.id, t.user_id, :deleted, :changedAt"
+            + " FROM tasks t WHERE t.id IN (:taskIds)", nativeQuery = true)
+    int recordChanges(@Param("taskIds") Collection<Long> taskIds,
+                      @Param("deleted") boolean deleted, @Param("changedAt") Instant changedAt);
+
+    // run before the tasks are deleted
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO task_changes (id, task_id, user_id, deleted, changed_at)"
+            + " SELECT nextval('task_changes_seq'), t.id, t.user_id, TRUE, :changedAt"
+            + " FROM tasks t WHERE t.user_id = :userId", nativeQuery = true)
+    int recordUserTombstones(@Param("userId") long userId, @Param("changedAt") Instant changedAt);
+
+    // call before the move, while the old owner is still in the row
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO task_changes (id, task_id, user_id, deleted, changed_at)"
+            + " SELECT nextval('task_changes_seq'), t.id, t.user_id, TRUE, :changedAt"
+            + " FROM tasks t WHERE t.id = :taskId AND t.user_id <> :userId", nativeQuery = true)
+    int recordMoveAway(@Param("taskId") long taskId, @Param("userId") long userId,
+                       @Param("changedAt") Instant changedAt);
+
+    @Query("SELECT c FROM TaskChange c WHERE c.id > :since ORDER BY c.id")
+    List<TaskChange> findPageAfter(@Param("since") long since, Pageable pageable);
+
+    @Query("SELECT c FROM TaskChange c WHERE c.id > :since AND c.userId = :userId ORDER BY c.id")
+    List<TaskChange> findPageAfter(@Param("since") long since, @Param("userId") long userId,
+                                   Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM TaskChange c WHERE c.changedAt <= :changedAt")
+    long findLastIdUpTo(@Param("changedAt") Instant changedAt);
+
+    // safe to drop: a client that would read them also reads the newer entry
+    @Modifying
+    @Query("DELETE FROM TaskChange c WHERE EXISTS (SELECT 1 FROM TaskChange n"
+            + " WHERE n.taskId = c.taskId AND n.userId = c.userId AND n.id > c.id)")
+    int deleteSuperseded();
+
+    @Modifying
+    @Query("DELETE FROM TaskChange c WHERE c.changedAt < :changedAt")
+    int deleteOlderThan(@Param("changedAt") Instant changedAt);
+}
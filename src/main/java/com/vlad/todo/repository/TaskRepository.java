@@ -1,18 +1,79 @@
 package com.vlad.todo.repository;
 
+import com.vlad.todo.dto.TaskDtoResponse;
 import com.vlad.todo.model.Task;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface  TaskRepository extends JpaRepository<Task, Long>,
+        JpaSpecificationExecutor<Task> {
+    // owner id comes from the foreign key column, so the users table is not joined
+    String SELECT_DTO = "SELECT new com.vlad.todo.dto.TaskDtoResponse(t.id, t.title, t.content,"
+            + " t.isCompleted, t.deadlineDate, t.isImportant, t.user.id, t.version) FROM Task t";
+    String STREAM_FETCH_SIZE = "1000";
 
-public interface  TaskRepository extends JpaRepository<Task, Long> {
     Optional<Task> findById(long id);
 
+    @Query(SELECT_DTO + " WHERE t.user.id = :userId ORDER BY t.id")
+    List<TaskDtoResponse> findDtosByUserId(@Param("userId") long userId);
+
+    @Query(SELECT_DTO + " ORDER BY t.id")
+    List<TaskDtoResponse> findAllDtos();
+
+    // close the stream inside the transaction that opened it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + " ORDER BY t.id")
+    Stream<TaskDtoResponse> streamAllDtos();
 
-    //@Query("SELECT t FROM Task t WHERE t.user.id = ?1")
-    @Query(value = "SELECT * FROM tasks WHERE user_id = ?1", nativeQuery = true)
-    List<Task> findByUser(long userId);
+    @Query(SELECT_DTO + " WHERE t.id = :id")
+    Optional<TaskDtoResponse> findDtoById(@Param("id") long id);
+
+    @Query(SELECT_DTO + " WHERE t.id IN :ids")
+    List<TaskDtoResponse> findDtosByIds(@Param("ids") Collection<Long> ids);
 
     void deleteById(long id);
+
+    @Query("SELECT t.version FROM Task t WHERE t.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // zero rows means the task is missing, has changed, or the new owner does not exist
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Task t SET t.title = COALESCE(:title, t.title),"
+            + " t.content = COALESCE(:content, t.content),"
+            + " t.isCompleted = COALESCE(:isCompleted, t.isCompleted),"
+            + " t.deadlineDate = COALESCE(:deadlineDate, t.deadlineDate),"
+            + " t.isImportant = COALESCE(:isImportant, t.isImportant),"
+            + " t.user.id = COALESCE(:userId, t.user.id),"
+            + " t.version = t.version + 1"
+            + " WHERE t.id = :id AND (:version IS NULL OR t.version = :version)"
+            + " AND (:userId IS NULL OR EXISTS (SELECT 1 FROM User u WHERE u.id = :userId))")
+    int updatePartially(@Param("id") long id, @Param("title") String title,
+                        @Param("content") String content,
+                        @Param("isCompleted") Boolean isCompleted,
+                        @Param("deadlineDate") LocalDate deadlineDate,
+                        @Param("isImportant") Boolean isImportant,
+                        @Param("userId") Long userId,
+                        @Param("version") Long version);
+
+    @Modifying
+    @Query("DELETE FROM Task t WHERE t.id = :id AND (:version IS NULL OR t.version = :version)")
+    int removeById(@Param("id") long id, @Param("version") Long version);
+
+    @Query("SELECT t.id FROM Task t WHERE t.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") long userId);
+
+    @Modifying
+    @Query("DELETE FROM Task t WHERE t.user.id = :userId")
+    int removeByUserId(@Param("userId") long userId);
 }
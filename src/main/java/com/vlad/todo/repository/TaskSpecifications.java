@@ -0,0 +1,72 @@
+package com.vlad.todo.repository;
+
+import com.vlad.todo.dto.TaskFilter;
+import com.vlad.todo.model.Task;
+import java.time.LocalDate;
+import org.springframework.data.jpa.domain.Specification;
+
+// factories return null for an absent criterion, which Specification.where and and skip
+public final class TaskSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
+    private TaskSpecifications() {
+    }
+
+    public static Specification<Task> matching(TaskFilter filter) {
+        return Specification.where(hasCompleted(filter.getCompleted()))
+                .and(hasImportant(filter.getImportant()))
+                .and(belongsToUser(filter.getUserId()))
+                .and(deadlineFrom(filter.getDeadlineFrom()))
+                .and(deadlineTo(filter.getDeadlineTo()))
+                .and(titleStartsWith(filter.getTitlePrefix()));
+    }
+
+    public static Specification<Task> hasCompleted(Boolean completed) {
+        return completed == null ? null
+                : (root, query, cb) -> cb.equal(root.get("isCompleted"), completed);
+    }
+
+    public static Specification<Task> hasImportant(Boolean important) {
+        return important == null ? null
+                : (root, query, cb) -> cb.equal(root.get("isImportant"), important);
+    }
+
+    // compares the foreign key column, so the users table is not joined
+    public static Specification<Task> belongsToUser(Long userId) {
+        return userId == null ? null
+                : (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    public static Specification<Task> deadlineFrom(LocalDate from) {
+        return from == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("deadlineDate"), from);
+    }
+
+    public static Specification<Task> deadlineTo(LocalDate to) {
+        return to == null ? null
+                : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("deadlineDate"), to);
+    }
+
+    public static Specification<Task> titleStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String pattern = escapeLike(prefix) + "%";
+        return (root, query, cb) -> cb.like(root.get("title"), pattern, LIKE_ESCAPE);
+    }
+
+    public static Specification<Task> idGreaterThan(long id) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), id);
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
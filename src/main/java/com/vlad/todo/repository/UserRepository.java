@@ -1,24 +1,81 @@
 package com.vlad.todo.repository;
 
+import com.vlad.todo.dto.UserDtoResponse;
 import com.vlad.todo.model.User;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+    String SELECT_DTO = "SELECT new com.vlad.todo.dto.UserDtoResponse("
+            + "u.id, u.firstName, u.lastName, u.email, u.phone, u.version) FROM User u";
+
     Optional<User> findById(long id);
 
+    // close the stream inside the transaction that opened it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE,
+            value = TaskRepository.STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + " ORDER BY u.id")
+    Stream<UserDtoResponse> streamAllDtos();
+
     boolean existsByEmail(String email);
 
     boolean existsByPhone(String phone);
 
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT u.phone FROM User u WHERE u.phone IN :phones")
+    List<String> findExistingPhones(@Param("phones") Collection<String> phones);
+
     void deleteById(long id);
 
-    @Query("SELECT u FROM User u JOIN u.groups g WHERE g.name = :groupName")
-    List<User> findUsersByGroupName(@Param("groupName") String groupName);
+    @Query(SELECT_DTO + " ORDER BY u.id")
+    List<UserDtoResponse> findAllDtos();
+
+    @Query(SELECT_DTO + " WHERE u.id = :id")
+    Optional<UserDtoResponse> findDtoById(@Param("id") long id);
+
+    @Query(SELECT_DTO + " WHERE u.id IN :ids")
+    List<UserDtoResponse> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_DTO + " JOIN u.groups g WHERE g.name = :groupName")
+    List<UserDtoResponse> findDtosByGroupName(@Param("groupName") String groupName);
+
+    @Query(SELECT_DTO + " WHERE u.id > :cursor ORDER BY u.id")
+    List<UserDtoResponse> findDtoPageAfter(@Param("cursor") long cursor, Pageable pageable);
+
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
 
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.firstName = COALESCE(:firstName, u.firstName),"
+            + " u.lastName = COALESCE(:lastName, u.lastName),"
+            + " u.email = COALESCE(:email, u.email),"
+            + " u.phone = COALESCE(:phone, u.phone),"
+            + " u.version = u.version + 1"
+            + " WHERE u.id = :id AND (:version IS NULL OR u.version = :version)")
+    int updatePartially(@Param("id") long id, @Param("firstName") String firstName,
+                        @Param("lastName") String lastName, @Param("email") String email,
+                        @Param("phone") String phone, @Param("version") Long version);
 
+    // holds the row until the transaction ends
+    @Query(value = "SELECT version FROM users WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockVersionById(@Param("id") long id);
 
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id AND (:version IS NULL OR u.version = :version)")
+    int removeById(@Param("id") long id, @Param("version") Long version);
 }
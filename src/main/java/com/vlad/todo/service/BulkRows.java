@@ -0,0 +1,29 @@
+package com.vlad.todo.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// bulk endpoints validate every row themselves instead of the request body
+final class BulkRows {
+    static final String MISSING_ROW = "Данные строки отсутствуют";
+
+    private BulkRows() {
+    }
+
+    // null when the row is valid
+    static String violations(Validator validator, Object row) {
+        if (row == null) {
+            return MISSING_ROW;
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,55 @@
+package com.vlad.todo.service;
+
+import com.vlad.todo.cache.CacheStats;
+import com.vlad.todo.cache.LfuCache;
+import com.vlad.todo.dto.CacheStatsResponse;
+import com.vlad.todo.exception.NotFoundException;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@AllArgsConstructor
+public class CacheService {
+
+    private final List<LfuCache<?>> caches;
+
+    public List<CacheStatsResponse> findAllStats() {
+        return caches.stream().map(this::toStatsResponse).toList();
+    }
+
+    public CacheStatsResponse findStatsByName(String name) {
+        return caches.stream()
+                .filter(cache -> cache.getName().equals(name))
+                .findFirst()
+                .map(this::toStatsResponse)
+                .orElseThrow(() -> new NotFoundException(
+                        String.format("Кэш с названием %s не найден", name)));
+    }
+
+    private CacheStatsResponse toStatsResponse(LfuCache<?> cache) {
+        CacheStats stats = cache.getStats();
+        CacheStatsResponse cacheStatsResponse = new CacheStatsResponse();
+        cacheStatsResponse.setName(cache.getName());
+        cacheStatsResponse.setSize(cache.size());
+        cacheStatsResponse.setWeight(cache.weight());
+        cacheStatsResponse.setHits(stats.getHits());
+        cacheStatsResponse.setMisses(stats.getMisses());
+        cacheStatsResponse.setOffHeapHits(stats.getOffHeapHits());
+        cacheStatsResponse.setHitRate(stats.getHitRate());
+        cacheStatsResponse.setPuts(stats.getPuts());
+        cacheStatsResponse.setEvictions(stats.getEvictions());
+        cacheStatsResponse.setRemovals(stats.getRemovals());
+        cacheStatsResponse.setExpirations(stats.getExpirations());
+        cacheStatsResponse.setLoads(stats.getLoads());
+        cacheStatsResponse.setRefreshes(stats.getRefreshes());
+        cacheStatsResponse.setLoadFailures(stats.getLoadFailures());
+        cacheStatsResponse.setCoalescedLoads(stats.getCoalescedLoads());
+        cacheStatsResponse.setNegativeHits(stats.getNegativeHits());
+        cacheStatsResponse.setNegativeSize(cache.negativeSize());
+        cacheStatsResponse.setOffHeapSize(cache.offHeapSize());
+        cacheStatsResponse.setOffHeapBytes(cache.offHeapBytes());
+        cacheStatsResponse.setEvictionFrequencyHistogram(stats.getEvictionFrequencyHistogram());
+        return cacheStatsResponse;
+    }
+}
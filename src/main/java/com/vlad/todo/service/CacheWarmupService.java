@@ -0,0 +1,136 @@
+package com.vlad.todo.service;
+
+import com.vlad.todo.cache.CacheSnapshot;
+import com.vlad.todo.cache.CachedGroup;
+import com.vlad.todo.cache.GroupCache;
+import com.vlad.todo.cache.KeyFrequency;
+import com.vlad.todo.cache.LfuCache;
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserCache;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.mapper.GroupMapper;
+import com.vlad.todo.mapper.TaskMapper;
+import com.vlad.todo.mapper.UserMapper;
+import com.vlad.todo.repository.GroupRepository;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// preloads on ApplicationStartedEvent, before the application reports itself ready
+@Slf4j
+@Service
+public class CacheWarmupService {
+
+    private final UserCache userCache;
+    private final TaskCache taskCache;
+    private final GroupCache groupCache;
+    private final UserRepository userRepository;
+    private final TaskRepository taskRepository;
+    private final GroupRepository groupRepository;
+    private final UserMapper userMapper;
+    private final TaskMapper taskMapper;
+    private final GroupMapper groupMapper;
+    private final Path snapshotDir;
+    private final int maxKeys;
+    private final int batchSize;
+
+    public CacheWarmupService(UserCache userCache, TaskCache taskCache, GroupCache groupCache,
+                              UserRepository userRepository, TaskRepository taskRepository,
+                              GroupRepository groupRepository, UserMapper userMapper,
+                              TaskMapper taskMapper, GroupMapper groupMapper,
+                              @Value("${cache.snapshot.dir}") String snapshotDir,
+                              @Value("${cache.snapshot.max-keys}") int maxKeys,
+                              @Value("${cache.snapshot.batch-size}") int batchSize) {
+        this.userCache = userCache;
+        this.taskCache = taskCache;
+        this.groupCache = groupCache;
+        this.userRepository = userRepository;
+        this.taskRepository = taskRepository;
+        this.groupRepository = groupRepository;
+        this.userMapper = userMapper;
+        this.taskMapper = taskMapper;
+        this.groupMapper = groupMapper;
+        this.snapshotDir = Path.of(snapshotDir);
+        this.maxKeys = maxKeys;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        long start = System.nanoTime();
+        int loaded = warm(userCache, ids -> userRepository.findAllById(ids).stream()
+                .map(userMapper::toDto).toList(), UserDtoResponse::getId);
+        loaded += warm(taskCache, ids -> taskRepository.findAllById(ids).stream()
+                .map(taskMapper::toDto).toList(), TaskDtoResponse::getId);
+        loaded += warm(groupCache, ids -> groupRepository.findAllById(ids).stream()
+                .map(groupMapper::toCached).toList(), CachedGroup::getId);
+        log.info("Cache warm-up preloaded {} entries in {} ms",
+                loaded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.snapshot.interval-ms}",
+            initialDelayString = "${cache.snapshot.interval-ms}")
+    public void snapshot() {
+        for (LfuCache<?> cache : List.of(userCache, taskCache, groupCache)) {
+            Path file = snapshotFile(cache);
+            try {
+                CacheSnapshot.write(file, cache.hottestKeys(maxKeys));
+            } catch (IOException e) {
+                log.warn("Failed to write snapshot of cache {} to {}: {}",
+                        cache.getName(), file, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    private <T> int warm(LfuCache<T> cache, Function<List<Long>, List<T>> batchLoader,
+                         Function<T, Long> idOf) {
+        Path file = snapshotFile(cache);
+        List<KeyFrequency<Long>> keys;
+        try {
+            keys = CacheSnapshot.read(file, maxKeys);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable snapshot of cache {} at {}: {}",
+                    cache.getName(), file, e.getMessage());
+            return 0;
+        }
+        int loaded = 0;
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<KeyFrequency<Long>> batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            Map<Long, T> values = batchLoader.apply(batch.stream().map(KeyFrequency::getKey).toList())
+                    .stream()
+                    .collect(Collectors.toMap(idOf, Function.identity()));
+            for (KeyFrequency<Long> key : batch) {
+                T value = values.get(key.getKey());
+                if (value != null) {
+                    cache.preload(key.getKey(), value, key.getFrequency());
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private Path snapshotFile(LfuCache<?> cache) {
+        return snapshotDir.resolve(cache.getName() + ".snapshot");
+    }
+}
@@ -0,0 +1,132 @@
+package com.vlad.todo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// DTO projections over a cursor keep heap usage flat regardless of table size
+@Slf4j
+@Service
+@AllArgsConstructor
+public class ExportService {
+    // the first row is flushed right away so the client sees the download start
+    static final int FLUSH_EVERY = 500;
+
+    static final List<String> TASK_COLUMNS = List.of(
+            "id", "title", "content", "isCompleted", "deadlineDate", "isImportant", "userId");
+    static final List<String> USER_COLUMNS = List.of(
+            "id", "firstName", "lastName", "email", "phone");
+
+    private final TaskRepository taskRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public long exportTasks(DataFormat format, OutputStream out) throws IOException {
+        try (Stream<TaskDtoResponse> rows = taskRepository.streamAllDtos()) {
+            long count = write(rows, TaskDtoResponse.class, format, out, TASK_COLUMNS,
+                    task -> new Object[] {task.getId(), task.getTitle(), task.getContent(),
+                        task.getIsCompleted(), task.getDeadlineDate(), task.getIsImportant(),
+                        task.getUserId()});
+            log.info("Exported {} tasks as {}", count, format);
+            return count;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportUsers(DataFormat format, OutputStream out) throws IOException {
+        try (Stream<UserDtoResponse> rows = userRepository.streamAllDtos()) {
+            long count = write(rows, UserDtoResponse.class, format, out, USER_COLUMNS,
+                    user -> new Object[] {user.getId(), user.getFirstName(),
+                        user.getLastName(), user.getEmail(), user.getPhone()});
+            log.info("Exported {} users as {}", count, format);
+            return count;
+        }
+    }
+
+    private <T> long write(Stream<T> rows, Class<T> type, DataFormat format,
+                           OutputStream out, List<String> columns,
+                           Function<T, Object[]> values) throws IOException {
+        return format == DataFormat.CSV
+                ? writeCsv(rows.iterator(), out, columns, values)
+                : writeNdjson(rows.iterator(), type, out);
+    }
+
+    private <T> long writeNdjson(Iterator<T> rows, Class<T> type, OutputStream out)
+            throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (rows.hasNext()) {
+                writer.writeValue(generator, rows.next());
+                generator.writeRaw('\n');
+                if (++count == 1 || count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static <T> long writeCsv(Iterator<T> rows, OutputStream out, List<String> columns,
+                                     Function<T, Object[]> values) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", columns));
+        writer.write("\r\n");
+        writer.flush();
+        long count = 0;
+        while (rows.hasNext()) {
+            Object[] row = values.apply(rows.next());
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCsvField(writer, row[i]);
+            }
+            writer.write("\r\n");
+            if (++count % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    // RFC 4180: quote only fields with a separator, a quote or a line break
+    private static void writeCsvField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0
+                && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -1,74 +1,146 @@
 package com.vlad.todo.service;
 
+import com.vlad.todo.cache.CachedGroup;
+import com.vlad.todo.cache.GroupCache;
 import com.vlad.todo.dto.GroupDtoRequest;
 import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.dto.MembershipChangeResponse;
+import com.vlad.todo.dto.PageResponse;
+import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.GroupMapper;
 import com.vlad.todo.model.Group;
 import com.vlad.todo.repository.GroupRepository;
-import jakarta.transaction.Transactional;
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
 @Transactional
 public class GroupService {
     public static final String GROUP_WITH_ID_NOT_FOUND = "Группа с id %d не найдена";
+    public static final String GROUP_VERSION_CHANGED =
+            "Группа с id %d была изменена, текущая версия %d";
+    public static final int MEMBERS_MAX_ITEMS = 1000;
 
     private final GroupMapper groupMapper;
     private GroupRepository groupRepository;
+    private final GroupCache groupCache;
+    private final UserService userService;
+    private final PageCursorCodec pageCursorCodec;
 
+    @Transactional(readOnly = true)
     public List<GroupDtoResponse> findAll() {
-        List<GroupDtoResponse> groupsDtoResponse = new ArrayList<>();
-        groupRepository.findAll().forEach(
-                group -> groupsDtoResponse.add(groupMapper.toDto(group)));
+        List<GroupDtoResponse> groupsDtoResponse = groupRepository.findAllDtos();
+        groupMapper.attachMembers(groupsDtoResponse, groupRepository.findAllMemberRows());
         return groupsDtoResponse;
     }
 
+    @Transactional(readOnly = true)
+    public PageResponse<GroupDtoResponse> findPage(String cursor, Integer size) {
+        long afterId = pageCursorCodec.decode(cursor);
+        int pageSize = pageCursorCodec.resolveSize(size);
+        PageResponse<GroupDtoResponse> page = pageCursorCodec.toPage(groupRepository
+                .findDtoPageAfter(afterId, pageCursorCodec.lookahead(pageSize)),
+                pageSize, GroupDtoResponse::getId);
+        if (!page.getItems().isEmpty()) {
+            List<Long> groupIds = page.getItems().stream().map(GroupDtoResponse::getId).toList();
+            groupMapper.attachMembers(page.getItems(), groupRepository.findMemberRows(groupIds));
+        }
+        return page;
+    }
+
+    @Transactional(readOnly = true)
     public GroupDtoResponse findById(long id) {
-        Group group = groupRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(GROUP_WITH_ID_NOT_FOUND, id)));
-        return groupMapper.toDto(group);
+        CachedGroup cachedGroup = groupCache.get(id, groupId ->
+                groupRepository.findById(groupId.longValue()).map(groupMapper::toCached).orElse(null));
+        if (cachedGroup == null) {
+            throw new NotFoundException(String.format(GROUP_WITH_ID_NOT_FOUND, id));
+        }
+        return toDto(cachedGroup);
+    }
+
+    private GroupDtoResponse toDto(CachedGroup group) {
+        List<Long> memberIds = group.getMemberIds().stream().sorted().toList();
+        return groupMapper.toDto(group, userService.findAllByIds(memberIds));
     }
 
     public GroupDtoResponse save(GroupDtoRequest groupDtoRequest) {
         Group group = groupMapper.toEntity(groupDtoRequest);
         groupRepository.save(group);
+        groupCache.put(group.getId(), groupMapper.toCached(group));
         return groupMapper.toDto(group);
     }
 
-    public GroupDtoResponse update(long id, GroupDtoRequest groupDtoRequest) {
-        Group group = groupRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(GROUP_WITH_ID_NOT_FOUND, id)));
-
-        if (groupDtoRequest.getName() != null) {
-            group.setName(groupDtoRequest.getName());
-        }
-        if (groupDtoRequest.getDescription() != null) {
-            group.setDescription(groupDtoRequest.getDescription());
+    public GroupDtoResponse update(long id, GroupDtoRequest groupDtoRequest, Long expectedVersion) {
+        int updated = groupRepository.updatePartially(id, groupDtoRequest.getName(),
+                groupDtoRequest.getDescription(), expectedVersion);
+        if (updated == 0) {
+            throw rejectedWrite(id);
         }
-        groupRepository.save(group);
-        return groupMapper.toDto(group);
+        groupCache.remove(id);
+        return findById(id);
     }
 
+    @Transactional(readOnly = true)
     public GroupDtoResponse findByName(String name) {
+        CachedGroup cachedGroup = groupCache.getByName(name);
+        if (cachedGroup != null) {
+            return toDto(cachedGroup);
+        }
         Group group = groupRepository.findByName(name)
                 .orElseThrow(() -> new NotFoundException(
                         String.format("Группа с названием %s не найдена", name)));
+        groupCache.put(group.getId(), groupMapper.toCached(group));
         return groupMapper.toDto(group);
     }
 
 
-    public void deleteById(long id) {
-        Group group = groupRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(GROUP_WITH_ID_NOT_FOUND, id)));
-        group.getUsers().forEach(user -> user.getGroups().remove(group));
-        groupRepository.deleteById(id);
+    public void deleteById(long id, Long expectedVersion) {
+        if (groupRepository.removeById(id, expectedVersion) == 0) {
+            throw rejectedWrite(id);
+        }
+        groupCache.remove(id);
+    }
+
+    private RuntimeException rejectedWrite(long id) {
+        return groupRepository.findVersionById(id)
+                .<RuntimeException>map(version -> new PreconditionFailedException(
+                        String.format(GROUP_VERSION_CHANGED, id, version)))
+                .orElseGet(() -> new NotFoundException(String.format(GROUP_WITH_ID_NOT_FOUND, id)));
+    }
+
+    // existing members and unknown user ids are skipped by the insert itself
+    public MembershipChangeResponse addMembers(long groupId, List<Long> userIds) {
+        Set<Long> distinctIds = checkMemberIds(groupId, userIds);
+        int added = groupRepository.addMembers(groupId, distinctIds);
+        groupCache.remove(groupId);
+        return new MembershipChangeResponse(groupId, distinctIds.size(), added);
+    }
+
+    public MembershipChangeResponse removeMembers(long groupId, List<Long> userIds) {
+        Set<Long> distinctIds = checkMemberIds(groupId, userIds);
+        int removed = groupRepository.removeMembers(groupId, distinctIds);
+        groupCache.remove(groupId);
+        return new MembershipChangeResponse(groupId, distinctIds.size(), removed);
+    }
+
+    private Set<Long> checkMemberIds(long groupId, List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MEMBERS_MAX_ITEMS) {
+            throw new InvalidInputException(
+                    "Количество пользователей должно быть от 1 до " + MEMBERS_MAX_ITEMS);
+        }
+        if (userIds.stream().anyMatch(id -> id == null || id < 1)) {
+            throw new InvalidInputException("Ids должны быть больше 0");
+        }
+        if (!groupRepository.existsById(groupId)) {
+            throw new NotFoundException(String.format(GROUP_WITH_ID_NOT_FOUND, groupId));
+        }
+        return new LinkedHashSet<>(userIds);
     }
 }
@@ -0,0 +1,78 @@
+package com.vlad.todo.service;
+
+import com.vlad.todo.dto.PageResponse;
+import com.vlad.todo.exception.InvalidInputException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+// pages are fetched with one extra row, so no count query is needed to detect a next page
+@Component
+public class PageCursorCodec {
+    public static final String INVALID_CURSOR = "Некорректный курсор страницы";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final int defaultSize;
+    private final int maxSize;
+
+    public PageCursorCodec(@Value("${pagination.default-size}") int defaultSize,
+                           @Value("${pagination.max-size}") int maxSize) {
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    public String encode(long lastId) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(lastId).array());
+    }
+
+    public long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(INVALID_CURSOR);
+        }
+        if (bytes.length != Long.BYTES) {
+            throw new InvalidInputException(INVALID_CURSOR);
+        }
+        long lastId = ByteBuffer.wrap(bytes).getLong();
+        if (lastId < 0) {
+            throw new InvalidInputException(INVALID_CURSOR);
+        }
+        return lastId;
+    }
+
+    public int resolveSize(Integer size) {
+        if (size == null) {
+            return defaultSize;
+        }
+        if (size < 1 || size > maxSize) {
+            throw new InvalidInputException(
+                    "Размер страницы должен быть от 1 до " + maxSize);
+        }
+        return size;
+    }
+
+    public Pageable lookahead(int size) {
+        return PageRequest.ofSize(size + 1);
+    }
+
+    public <T> PageResponse<T> toPage(List<T> rows, int size, ToLongFunction<T> idOf) {
+        if (rows.size() <= size) {
+            return new PageResponse<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new PageResponse<>(List.copyOf(items),
+                encode(idOf.applyAsLong(items.get(size - 1))));
+    }
+}
@@ -0,0 +1,193 @@
+package com.vlad.todo.service;
+
+import com.vlad.todo.config.ReadWriteRoutingDataSource;
+import com.vlad.todo.dto.TaskChangesResponse;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.exception.SyncTokenExpiredException;
+import com.vlad.todo.model.TaskChange;
+import com.vlad.todo.repository.TaskChangeRepository;
+import com.vlad.todo.repository.TaskRepository;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// entries younger than settle-ms are held back so late commits are not skipped
+@Slf4j
+@Service
+@Transactional
+public class TaskChangeService {
+    public static final String INVALID_SYNC_TOKEN = "Некорректный токен синхронизации";
+    public static final String SYNC_TOKEN_EXPIRED =
+            "Токен синхронизации устарел, выполните полную синхронизацию";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int TOKEN_BYTES = 2 * Long.BYTES;
+
+    private final TaskChangeRepository taskChangeRepository;
+    private final TaskRepository taskRepository;
+    private final PageCursorCodec pageCursorCodec;
+    private final long settleMs;
+    private final long retentionMs;
+    private final LongSupplier clock;
+
+    @Autowired
+    public TaskChangeService(TaskChangeRepository taskChangeRepository,
+                             TaskRepository taskRepository, PageCursorCodec pageCursorCodec,
+                             @Value("${sync.changes.settle-ms}") long settleMs,
+                             @Value("${sync.changes.retention-ms}") long retentionMs) {
+        this(taskChangeRepository, taskRepository, pageCursorCodec, settleMs, retentionMs,
+                System::currentTimeMillis);
+    }
+
+    TaskChangeService(TaskChangeRepository taskChangeRepository, TaskRepository taskRepository,
+                      PageCursorCodec pageCursorCodec, long settleMs, long retentionMs,
+                      LongSupplier clock) {
+        this.taskChangeRepository = taskChangeRepository;
+        this.taskRepository = taskRepository;
+        this.pageCursorCodec = pageCursorCodec;
+        this.settleMs = settleMs;
+        this.retentionMs = retentionMs;
+        this.clock = clock;
+    }
+
+    public void recordSaved(Collection<Long> taskIds) {
+        if (!taskIds.isEmpty()) {
+            taskChangeRepository.recordChanges(taskIds, false, now());
+        }
+    }
+
+    // call before delete or move, while the owner is still in the row
+    public void recordTombstones(Collection<Long> taskIds) {
+        if (!taskIds.isEmpty()) {
+            taskChangeRepository.recordChanges(taskIds, true, now());
+        }
+    }
+
+    public void recordTombstonesForUser(long userId) {
+        taskChangeRepository.recordUserTombstones(userId, now());
+    }
+
+    public void recordMoveAway(long taskId, long newUserId) {
+        taskChangeRepository.recordMoveAway(taskId, newUserId, now());
+    }
+
+    // read on the primary: on a lagging replica the token would move past entries not yet replicated
+    @Transactional(readOnly = true)
+    public TaskChangesResponse findChanges(String since, Long userId, Integer size) {
+        ReadWriteRoutingDataSource.usePrimary();
+        if (userId != null && userId < 1) {
+            throw new InvalidInputException("Id пользователя должен быть больше 0");
+        }
+        int pageSize = pageCursorCodec.resolveSize(size);
+        long now = clock.getAsLong();
+        long settledAt = now - settleMs;
+        if (since == null || since.isEmpty()) {
+            long lastId = taskChangeRepository.findLastIdUpTo(Instant.ofEpochMilli(settledAt));
+            return new TaskChangesResponse(List.of(), List.of(), encode(lastId, settledAt), false);
+        }
+        long[] token = decode(since);
+        if (token[1] - settleMs < now - retentionMs) {
+            throw new SyncTokenExpiredException(SYNC_TOKEN_EXPIRED);
+        }
+        List<TaskChange> rows = userId == null
+                ? taskChangeRepository.findPageAfter(token[0], pageCursorCodec.lookahead(pageSize))
+                : taskChangeRepository.findPageAfter(token[0], userId,
+                        pageCursorCodec.lookahead(pageSize));
+
+        Map<Long, TaskChange> latestByTaskId = new LinkedHashMap<>();
+        long lastId = token[0];
+        long notBefore = Math.max(token[1], settledAt);
+        boolean hasMore = false;
+        for (int i = 0; i < rows.size(); i++) {
+            TaskChange change = rows.get(i);
+            if (change.getChangedAt().toEpochMilli() > settledAt) {
+                break;
+            }
+            if (i == pageSize) {
+                hasMore = true;
+                notBefore = Math.max(token[1], rows.get(i - 1).getChangedAt().toEpochMilli());
+                break;
+            }
+            latestByTaskId.remove(change.getTaskId());
+            latestByTaskId.put(change.getTaskId(), change);
+            lastId = change.getId();
+        }
+        return collect(latestByTaskId.values(), userId, encode(lastId, notBefore), hasMore);
+    }
+
+    private TaskChangesResponse collect(Collection<TaskChange> changes, Long userId,
+                                        String nextToken, boolean hasMore) {
+        List<Long> savedIds = changes.stream()
+                .filter(change -> !change.isDeleted())
+                .map(TaskChange::getTaskId)
+                .toList();
+        Map<Long, TaskDtoResponse> current = savedIds.isEmpty() ? Map.of()
+                : taskRepository.findDtosByIds(savedIds).stream()
+                        .collect(Collectors.toMap(TaskDtoResponse::getId, Function.identity()));
+        List<TaskDtoResponse> changed = new ArrayList<>(savedIds.size());
+        List<Long> deleted = new ArrayList<>();
+        for (TaskChange change : changes) {
+            TaskDtoResponse task = change.isDeleted() ? null : current.get(change.getTaskId());
+            if (task != null && (userId == null || task.getUserId().equals(userId))) {
+                changed.add(task);
+            } else {
+                deleted.add(change.getTaskId());
+            }
+        }
+        return new TaskChangesResponse(changed, deleted, nextToken, hasMore);
+    }
+
+    @Scheduled(fixedDelayString = "${sync.changes.compaction-interval-ms}",
+            initialDelayString = "${sync.changes.compaction-interval-ms}")
+    public void compact() {
+        int superseded = taskChangeRepository.deleteSuperseded();
+        int expired = taskChangeRepository.deleteOlderThan(
+                Instant.ofEpochMilli(clock.getAsLong() - retentionMs));
+        log.info("Task change log compacted: {} superseded and {} expired entries removed",
+                superseded, expired);
+    }
+
+    private Instant now() {
+        return Instant.ofEpochMilli(clock.getAsLong());
+    }
+
+    private static String encode(long lastId, long notBefore) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(TOKEN_BYTES)
+                .putLong(lastId).putLong(notBefore).array());
+    }
+
+    // last seen entry id, and the time no unseen entry is older than
+    private static long[] decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(INVALID_SYNC_TOKEN);
+        }
+        if (bytes.length != TOKEN_BYTES) {
+            throw new InvalidInputException(INVALID_SYNC_TOKEN);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long lastId = buffer.getLong();
+        if (lastId < 0) {
+            throw new InvalidInputException(INVALID_SYNC_TOKEN);
+        }
+        return new long[] {lastId, buffer.getLong()};
+    }
+}
@@ -0,0 +1,467 @@
+package com.vlad.todo.service;
+
+import static com.vlad.todo.service.UserService.USER_WITH_ID_NOT_FOUND;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.ImportReport;
+import com.vlad.todo.dto.TaskDtoRequest;
+import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.mapper.TaskMapper;
+import com.vlad.todo.model.Task;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// parsing on the request thread overlaps with batched writes on the executor
+@Slf4j
+@Service
+public class TaskImportService {
+    static final int BATCH_SIZE = 500;
+    static final int QUEUE_CAPACITY = 4;
+    static final int USER_LOOKUP_CAPACITY = 10_000;
+    static final int MAX_REPORTED_ERRORS = 1000;
+    static final int MAX_RECORD_CHARS = 1 << 20;
+    static final String MALFORMED_LINE = "Некорректная строка: %s";
+    static final String RECORD_TOO_LONG = "Строка длиннее %d символов";
+    static final String FIELD_COUNT_MISMATCH = "Ожидалось полей: %d, получено: %d";
+    static final String WRITE_FAILED = "Не удалось сохранить строку: %s";
+    private static final long HANDOFF_POLL_MS = 100;
+
+    // compared by identity
+    private static final List<ImportRow> END_OF_INPUT = new ArrayList<>();
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TaskMapper taskMapper;
+    private final TaskRepository taskRepository;
+    private final UserRepository userRepository;
+    private final UserTaskIdsCache userTaskIdsCache;
+    private final TaskCache taskCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskChangeService taskChangeService;
+    private final Executor executor;
+
+    public TaskImportService(ObjectMapper objectMapper, Validator validator,
+                             TaskMapper taskMapper, TaskRepository taskRepository,
+                             UserRepository userRepository, UserTaskIdsCache userTaskIdsCache,
+                             TaskCache taskCache, EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             TaskChangeService taskChangeService,
+                             @Qualifier("executor") Executor executor) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.taskMapper = taskMapper;
+        this.taskRepository = taskRepository;
+        this.userRepository = userRepository;
+        this.userTaskIdsCache = userTaskIdsCache;
+        this.taskCache = taskCache;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskChangeService = taskChangeService;
+        this.executor = executor;
+    }
+
+    private record ImportRow(int line, TaskDtoRequest request, String error) {
+    }
+
+    // full batches read before a fatal parse error are still written, then it is rethrown
+    public ImportReport importTasks(DataFormat format, InputStream in) throws IOException {
+        long started = System.nanoTime();
+        RowReader rows = new RowReader(format,
+                new BoundedLineReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        ImportReport report = new ImportReport();
+        BlockingQueue<List<ImportRow>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(
+                () -> writeBatches(queue, report), executor);
+        try {
+            List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+            for (ImportRow row = rows.next(); row != null; row = rows.next()) {
+                batch.add(row);
+                if (batch.size() == BATCH_SIZE) {
+                    handOff(queue, batch, writer);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                handOff(queue, batch, writer);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                finish(queue, writer);
+            } catch (RuntimeException writeFailure) {
+                if (writeFailure != e) {
+                    e.addSuppressed(writeFailure);
+                }
+            }
+            throw e;
+        }
+        finish(queue, writer);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        report.setElapsedMs(elapsedMs);
+        report.setRowsPerSecond(report.getProcessed() * 1000 / Math.max(elapsedMs, 1));
+        log.info("Imported {} of {} tasks in {} ms ({} rows/s)", report.getImported(),
+                report.getProcessed(), elapsedMs, report.getRowsPerSecond());
+        return report;
+    }
+
+    private static void finish(BlockingQueue<List<ImportRow>> queue,
+                               CompletableFuture<Void> writer) {
+        handOff(queue, END_OF_INPUT, writer);
+        writer.join();
+    }
+
+    // gives up once the writer has stopped, so a failed writer cannot block parsing
+    private static void handOff(BlockingQueue<List<ImportRow>> queue, List<ImportRow> batch,
+                                CompletableFuture<Void> writer) {
+        try {
+            while (!queue.offer(batch, HANDOFF_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    writer.join();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Task import was interrupted", e);
+        }
+    }
+
+    private void writeBatches(BlockingQueue<List<ImportRow>> queue, ImportReport report) {
+        Map<Long, Boolean> knownUsers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > USER_LOOKUP_CAPACITY;
+            }
+        };
+        try {
+            for (List<ImportRow> batch = queue.take(); batch != END_OF_INPUT;
+                    batch = queue.take()) {
+                writeBatch(batch, knownUsers, report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Task import was interrupted", e);
+        }
+    }
+
+    private void writeBatch(List<ImportRow> batch, Map<Long, Boolean> knownUsers,
+                            ImportReport report) {
+        report.setProcessed(report.getProcessed() + batch.size());
+        Set<Long> unknownUserIds = new HashSet<>();
+        for (ImportRow row : batch) {
+            if (row.error() == null && !knownUsers.containsKey(row.request().getUserId())) {
+                unknownUserIds.add(row.request().getUserId());
+            }
+        }
+        if (!unknownUserIds.isEmpty()) {
+            Set<Long> existing = new HashSet<>(userRepository.findExistingIds(unknownUserIds));
+            unknownUserIds.forEach(id -> knownUsers.put(id, existing.contains(id)));
+        }
+
+        List<ImportRow> accepted = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            if (row.error() != null) {
+                reject(report, row.line(), HttpStatus.BAD_REQUEST, row.error());
+            } else if (!Boolean.TRUE.equals(knownUsers.get(row.request().getUserId()))) {
+                reject(report, row.line(), HttpStatus.NOT_FOUND,
+                        String.format(USER_WITH_ID_NOT_FOUND, row.request().getUserId()));
+            } else {
+                accepted.add(row);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        List<Long> savedIds;
+        try {
+            savedIds = transactionTemplate.execute(status -> {
+                List<Task> tasks = new ArrayList<>(accepted.size());
+                for (ImportRow row : accepted) {
+                    Task task = taskMapper.toEntity(row.request());
+                    task.setUser(userRepository.getReferenceById(row.request().getUserId()));
+                    tasks.add(task);
+                }
+                taskRepository.saveAll(tasks);
+                taskRepository.flush();
+                List<Long> ids = tasks.stream().map(Task::getId).toList();
+                taskChangeService.recordSaved(ids);
+                entityManager.clear();
+                return ids;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Task import batch of {} rows failed: {}", accepted.size(), e.getMessage());
+            accepted.forEach(row -> reject(report, row.line(), HttpStatus.INTERNAL_SERVER_ERROR,
+                    String.format(WRITE_FAILED, e.getMessage())));
+            return;
+        }
+        report.setImported(report.getImported() + accepted.size());
+        savedIds.forEach(taskCache::remove);
+        accepted.stream()
+                .map(row -> row.request().getUserId())
+                .distinct()
+                .forEach(userTaskIdsCache::remove);
+    }
+
+    private static void reject(ImportReport report, int line, HttpStatus status, String error) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(BulkItemResult.failure(line, status.value(), error));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    // a CSV record may span several lines inside quotes
+    private final class RowReader {
+        private final DataFormat format;
+        private final BoundedLineReader reader;
+        private List<String> columns;
+        private int line;
+        private int recordLine;
+        private boolean recordTooLong;
+
+        RowReader(DataFormat format, BoundedLineReader reader) {
+            this.format = format;
+            this.reader = reader;
+        }
+
+        ImportRow next() throws IOException {
+            return format == DataFormat.CSV ? nextCsvRow() : nextJsonRow();
+        }
+
+        private ImportRow nextJsonRow() throws IOException {
+            String text;
+            do {
+                text = reader.readLine(MAX_RECORD_CHARS);
+                line++;
+            } while (text != null && text.isBlank() && !reader.isTruncated());
+            if (text == null) {
+                return null;
+            }
+            if (reader.isTruncated()) {
+                return new ImportRow(line, null, String.format(RECORD_TOO_LONG, MAX_RECORD_CHARS));
+            }
+            try {
+                return validated(line, objectMapper.readValue(text, TaskDtoRequest.class));
+            } catch (JsonProcessingException e) {
+                return new ImportRow(line, null,
+                        String.format(MALFORMED_LINE, e.getOriginalMessage()));
+            }
+        }
+
+        private ImportRow nextCsvRow() throws IOException {
+            if (columns == null) {
+                String header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                if (recordTooLong) {
+                    throw new InvalidInputException(String.format("Строка %d: " + RECORD_TOO_LONG,
+                            recordLine, MAX_RECORD_CHARS));
+                }
+                columns = parseRecord(header.replace("\uFEFF", "")).stream()
+                        .map(String::trim)
+                        .toList();
+            }
+            String record;
+            do {
+                record = readRecord();
+            } while (record != null && record.isBlank() && !recordTooLong);
+            if (record == null) {
+                return null;
+            }
+            if (recordTooLong) {
+                return new ImportRow(recordLine, null,
+                        String.format(RECORD_TOO_LONG, MAX_RECORD_CHARS));
+            }
+            List<String> fields = parseRecord(record);
+            if (fields.size() != columns.size()) {
+                return new ImportRow(recordLine, null, String.format(FIELD_COUNT_MISMATCH,
+                        columns.size(), fields.size()));
+            }
+            ObjectNode node = objectMapper.createObjectNode();
+            for (int i = 0; i < fields.size(); i++) {
+                if (!fields.get(i).isEmpty()) {
+                    node.put(columns.get(i), fields.get(i));
+                }
+            }
+            try {
+                return validated(recordLine, objectMapper.treeToValue(node, TaskDtoRequest.class));
+            } catch (JsonProcessingException e) {
+                return new ImportRow(recordLine, null,
+                        String.format(MALFORMED_LINE, e.getOriginalMessage()));
+            }
+        }
+
+        // an overlong record is still read to its end, so the next record starts in the right place
+        private String readRecord() throws IOException {
+            String text = reader.readLine(MAX_RECORD_CHARS);
+            if (text == null) {
+                return null;
+            }
+            recordLine = ++line;
+            recordTooLong = reader.isTruncated();
+            int quotes = quoteCount(text) + reader.droppedQuotes();
+            if (quotes % 2 == 0) {
+                return text;
+            }
+            StringBuilder record = new StringBuilder(text);
+            while (quotes % 2 != 0) {
+                int room = recordTooLong ? 0 : MAX_RECORD_CHARS - record.length() - 1;
+                String continuation = reader.readLine(Math.max(room, 0));
+                if (continuation == null) {
+                    break;
+                }
+                line++;
+                quotes += quoteCount(continuation) + reader.droppedQuotes();
+                recordTooLong |= room <= 0 || reader.isTruncated();
+                if (!recordTooLong) {
+                    record.append('\n').append(continuation);
+                }
+            }
+            return record.toString();
+        }
+    }
+
+    // like BufferedReader.readLine, but keeps at most limit chars of a line and skips the rest
+    static final class BoundedLineReader {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int end;
+        private boolean skipLineFeed;
+        private boolean truncated;
+        private int droppedQuotes;
+
+        BoundedLineReader(Reader in) {
+            this.in = in;
+        }
+
+        String readLine(int limit) throws IOException {
+            StringBuilder text = null;
+            truncated = false;
+            droppedQuotes = 0;
+            while (true) {
+                if (position == end) {
+                    end = Math.max(in.read(buffer, 0, buffer.length), 0);
+                    position = 0;
+                    if (end == 0) {
+                        return text == null ? null : text.toString();
+                    }
+                }
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+                if (text == null) {
+                    text = new StringBuilder();
+                }
+                int start = position;
+                while (position < end && buffer[position] != '\n' && buffer[position] != '\r') {
+                    position++;
+                }
+                append(text, start, limit);
+                if (position < end) {
+                    skipLineFeed = buffer[position] == '\r';
+                    position++;
+                    return text.toString();
+                }
+            }
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        // quotes in the skipped part of the last line
+        int droppedQuotes() {
+            return droppedQuotes;
+        }
+
+        private void append(StringBuilder text, int start, int limit) {
+            int kept = Math.min(position - start, Math.max(limit - text.length(), 0));
+            text.append(buffer, start, kept);
+            for (int i = start + kept; i < position; i++) {
+                truncated = true;
+                if (buffer[i] == '"') {
+                    droppedQuotes++;
+                }
+            }
+        }
+    }
+
+    private ImportRow validated(int line, TaskDtoRequest request) {
+        return new ImportRow(line, request, BulkRows.violations(validator, request));
+    }
+
+    private static int quoteCount(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static List<String> parseRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
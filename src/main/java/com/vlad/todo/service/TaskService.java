@@ -2,51 +2,157 @@ package com.vlad.todo.service;
 
 import static com.vlad.todo.service.UserService.USER_WITH_ID_NOT_FOUND;
 
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.TaskDtoRequest;
 import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.TaskFilter;
+import com.vlad.todo.dto.TaskPatchRequest;
 import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.TaskMapper;
 import com.vlad.todo.model.Task;
 import com.vlad.todo.model.User;
 import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.TaskSpecifications;
 import com.vlad.todo.repository.UserRepository;
-import jakarta.transaction.Transactional;
+import jakarta.validation.Validator;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
 @Transactional
 public class TaskService {
     public static final String TASK_WITH_ID_NOT_FOUND = "Задача с id %d не найдена";
+    public static final String TASK_VERSION_CHANGED =
+            "Задача с id %d была изменена, текущая версия %d";
+    public static final String TASK_DUPLICATED_IN_REQUEST = "Задача повторяется в запросе";
+    public static final int BULK_MAX_ITEMS = 1000;
+    private static final Sort BY_ID = Sort.by("id");
 
     private final TaskMapper taskMapper;
     private TaskRepository taskRepository;
     private UserRepository userRepository;
+    private final TaskCache taskCache;
+    private final UserTaskIdsCache userTaskIdsCache;
+    private final PageCursorCodec pageCursorCodec;
+    private final Validator validator;
+    private final TaskChangeService taskChangeService;
 
+    @Transactional(readOnly = true)
     public List<TaskDtoResponse> findAllTasks() {
-        List<TaskDtoResponse> tasksDtoResponse = new ArrayList<>();
-        taskRepository.findAll().forEach(
-                task -> tasksDtoResponse.add(taskMapper.toDto(task)));
-        return tasksDtoResponse;
+        return taskRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public List<TaskDtoResponse> findTasks(TaskFilter filter) {
+        validateFilter(filter);
+        return taskRepository.findAll(TaskSpecifications.matching(filter), BY_ID).stream()
+                .map(taskMapper::toDto)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public PageResponse<TaskDtoResponse> findTasksPage(String cursor, Integer size,
+                                                       TaskFilter filter) {
+        validateFilter(filter);
+        long afterId = pageCursorCodec.decode(cursor);
+        int pageSize = pageCursorCodec.resolveSize(size);
+        List<TaskDtoResponse> rows = taskRepository
+                .findBy(TaskSpecifications.matching(filter)
+                                .and(TaskSpecifications.idGreaterThan(afterId)),
+                        query -> query.sortBy(BY_ID).limit(pageSize + 1).all()).stream()
+                .map(taskMapper::toDto)
+                .toList();
+        return pageCursorCodec.toPage(rows, pageSize, TaskDtoResponse::getId);
     }
 
+    private void validateFilter(TaskFilter filter) {
+        if (filter.getUserId() != null && filter.getUserId() < 1) {
+            throw new InvalidInputException("Id должен быть больше 0");
+        }
+        if (filter.getDeadlineFrom() != null && filter.getDeadlineTo() != null
+                && filter.getDeadlineFrom().isAfter(filter.getDeadlineTo())) {
+            throw new InvalidInputException("Начало периода дедлайна позже его конца");
+        }
+    }
+
+    @Transactional(readOnly = true)
     public List<TaskDtoResponse> findTasksByUser(long userId) {
-        List<Task> tasks = taskRepository.findByUser(userId);
-        List<TaskDtoResponse> tasksDtoResponse = new ArrayList<>();
+        List<Long> cachedIds = userTaskIdsCache.get(userId);
+        if (cachedIds != null) {
+            List<TaskDtoResponse> cachedTasks = resolveCachedTasks(userId, cachedIds);
+            if (cachedTasks != null) {
+                return cachedTasks;
+            }
+        }
+        List<TaskDtoResponse> tasksDtoResponse = taskRepository.findDtosByUserId(userId);
+        List<Long> taskIds = new ArrayList<>(tasksDtoResponse.size());
 
-        tasks.forEach(task -> tasksDtoResponse.add(taskMapper.toDto(task)));
+        tasksDtoResponse.forEach(taskDtoResponse -> {
+            taskCache.put(taskDtoResponse.getId(), taskDtoResponse);
+            taskIds.add(taskDtoResponse.getId());
+        });
+        userTaskIdsCache.putTaskIds(userId, taskIds);
         return tasksDtoResponse;
     }
 
+    // null means an id is gone or has moved to another user, so the caller reloads the list
+    private List<TaskDtoResponse> resolveCachedTasks(long userId, List<Long> taskIds) {
+        List<TaskDtoResponse> tasksDtoResponse = new ArrayList<>(taskIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long taskId : taskIds) {
+            TaskDtoResponse cachedTask = taskCache.get(taskId);
+            tasksDtoResponse.add(cachedTask);
+            if (cachedTask == null) {
+                missingIds.add(taskId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return ownedBy(userId, tasksDtoResponse) ? tasksDtoResponse : null;
+        }
+        Map<Long, TaskDtoResponse> loaded = taskRepository.findDtosByIds(missingIds).stream()
+                .collect(Collectors.toMap(TaskDtoResponse::getId, Function.identity()));
+        if (loaded.size() != missingIds.size()) {
+            return null;
+        }
+        loaded.forEach(taskCache::put);
+        for (int i = 0; i < tasksDtoResponse.size(); i++) {
+            if (tasksDtoResponse.get(i) == null) {
+                tasksDtoResponse.set(i, loaded.get(taskIds.get(i)));
+            }
+        }
+        return ownedBy(userId, tasksDtoResponse) ? tasksDtoResponse : null;
+    }
+
+    private static boolean ownedBy(long userId, List<TaskDtoResponse> tasks) {
+        return tasks.stream().allMatch(task -> task.getUserId() == userId);
+    }
+
+    @Transactional(readOnly = true)
     public TaskDtoResponse findTaskById(long id) {
-        Task task = taskRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(TASK_WITH_ID_NOT_FOUND, id)));
-        return taskMapper.toDto(task);
+        TaskDtoResponse taskDtoResponse = taskCache.get(id, taskId ->
+                taskRepository.findDtoById(taskId.longValue()).orElse(null));
+        if (taskDtoResponse == null) {
+            throw new NotFoundException(String.format(TASK_WITH_ID_NOT_FOUND, id));
+        }
+        return taskDtoResponse;
     }
 
     public TaskDtoResponse saveTask(TaskDtoRequest taskDtoRequest) {
@@ -59,38 +165,258 @@ public class TaskService {
         Task task = taskMapper.toEntity(taskDtoRequest);
         task.setUser(user);
         taskRepository.save(task);
-        return taskMapper.toDto(task);
+        taskChangeService.recordSaved(List.of(task.getId()));
+        TaskDtoResponse taskDtoResponse = taskMapper.toDto(task);
+        taskCache.put(task.getId(), taskDtoResponse);
+        userTaskIdsCache.addTask(user.getId(), task.getId());
+        return taskDtoResponse;
     }
 
-    public TaskDtoResponse updateTask(long id, TaskDtoRequest taskDtoRequest) {
-        Task task = taskRepository.findById(id)
+    // a lookup runs only when nothing was updated, to tell the failure reasons apart
+    public TaskDtoResponse updateTask(long id, TaskDtoRequest taskDtoRequest,
+                                      Long expectedVersion) {
+        Long userId = taskDtoRequest.getUserId();
+        if (userId != null && userId < 1) {
+            throw new InvalidInputException("Id пользователя должен быть больше 0");
+        }
+        if (userId != null) {
+            taskChangeService.recordMoveAway(id, userId);
+        }
+        int updated = taskRepository.updatePartially(id, taskDtoRequest.getTitle(),
+                taskDtoRequest.getContent(), taskDtoRequest.getIsCompleted(),
+                taskDtoRequest.getDeadlineDate(), taskDtoRequest.getIsImportant(), userId,
+                expectedVersion);
+        if (updated == 0) {
+            long currentVersion = taskRepository.findVersionById(id)
+                    .orElseThrow(() -> new NotFoundException(
+                            String.format(TASK_WITH_ID_NOT_FOUND, id)));
+            if (userId != null && (expectedVersion == null || expectedVersion == currentVersion)) {
+                throw new NotFoundException(String.format(USER_WITH_ID_NOT_FOUND, userId));
+            }
+            throw new PreconditionFailedException(
+                    String.format(TASK_VERSION_CHANGED, id, currentVersion));
+        }
+        taskChangeService.recordSaved(List.of(id));
+        TaskDtoResponse taskDtoResponse = taskRepository.findDtoById(id)
                 .orElseThrow(() -> new NotFoundException(
                         String.format(TASK_WITH_ID_NOT_FOUND, id)));
+        TaskDtoResponse previousTask = taskCache.get(id);
+        taskCache.put(id, taskDtoResponse);
+        if (previousTask != null && !previousTask.getUserId().equals(taskDtoResponse.getUserId())) {
+            userTaskIdsCache.removeTask(previousTask.getUserId(), id);
+        }
+        if (userId != null) {
+            userTaskIdsCache.addTask(taskDtoResponse.getUserId(), id);
+        }
+        return taskDtoResponse;
+    }
 
-        if (taskDtoRequest.getTitle() != null) {
-            task.setTitle(taskDtoRequest.getTitle());
+    public void deleteTaskById(long id, Long expectedVersion) {
+        taskChangeService.recordTombstones(List.of(id));
+        if (taskRepository.removeById(id, expectedVersion) == 0) {
+            throw rejectedWrite(id);
         }
-        if (taskDtoRequest.getContent() != null) {
-            task.setContent(taskDtoRequest.getContent());
+        TaskDtoResponse removedTask = taskCache.remove(id);
+        if (removedTask != null) {
+            userTaskIdsCache.removeTask(removedTask.getUserId(), id);
         }
-        if (taskDtoRequest.getIsCompleted() != null) {
-            task.setIsCompleted(taskDtoRequest.getIsCompleted());
+    }
+
+    private RuntimeException rejectedWrite(long id) {
+        return taskRepository.findVersionById(id)
+                .<RuntimeException>map(version -> new PreconditionFailedException(
+                        String.format(TASK_VERSION_CHANGED, id, version)))
+                .orElseGet(() -> new NotFoundException(String.format(TASK_WITH_ID_NOT_FOUND, id)));
+    }
+
+    // owners are attached as references after one existence query, so inserts can batch
+    public List<BulkItemResult<TaskDtoResponse>> createTasks(List<TaskDtoRequest> taskDtoRequests) {
+        checkBulkSize(taskDtoRequests);
+        List<BulkItemResult<TaskDtoResponse>> results = new ArrayList<>(taskDtoRequests.size());
+        for (int i = 0; i < taskDtoRequests.size(); i++) {
+            String violations = BulkRows.violations(validator, taskDtoRequests.get(i));
+            results.add(violations == null ? null
+                    : BulkItemResult.failure(i, HttpStatus.BAD_REQUEST.value(), violations));
+        }
+        Set<Long> existingUserIds = findExistingUserIds(taskDtoRequests.stream()
+                .filter(Objects::nonNull)
+                .map(TaskDtoRequest::getUserId)
+                .toList());
+
+        List<Integer> created = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < taskDtoRequests.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            TaskDtoRequest taskDtoRequest = taskDtoRequests.get(i);
+            if (!existingUserIds.contains(taskDtoRequest.getUserId())) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.NOT_FOUND.value(),
+                        String.format(USER_WITH_ID_NOT_FOUND, taskDtoRequest.getUserId())));
+                continue;
+            }
+            Task task = taskMapper.toEntity(taskDtoRequest);
+            task.setUser(userRepository.getReferenceById(taskDtoRequest.getUserId()));
+            tasks.add(task);
+            created.add(i);
         }
-        if (taskDtoRequest.getDeadlineDate() != null) {
-            task.setDeadlineDate(taskDtoRequest.getDeadlineDate());
+        taskRepository.saveAll(tasks);
+        taskRepository.flush();
+        taskChangeService.recordSaved(tasks.stream().map(Task::getId).toList());
+        for (int k = 0; k < tasks.size(); k++) {
+            TaskDtoResponse taskDtoResponse = taskMapper.toDto(tasks.get(k));
+            taskCache.put(taskDtoResponse.getId(), taskDtoResponse);
+            userTaskIdsCache.addTask(taskDtoResponse.getUserId(), taskDtoResponse.getId());
+            results.set(created.get(k), BulkItemResult.success(created.get(k),
+                    HttpStatus.CREATED.value(), taskDtoResponse));
         }
-        if (taskDtoRequest.getIsImportant() != null) {
-            task.setIsImportant(taskDtoRequest.getIsImportant());
+        return results;
+    }
+
+    public List<BulkItemResult<TaskDtoResponse>> updateTasks(List<TaskPatchRequest> patches) {
+        checkBulkSize(patches);
+        List<BulkItemResult<TaskDtoResponse>> results = new ArrayList<>(patches.size());
+        Set<Long> requestIds = new HashSet<>();
+        for (int i = 0; i < patches.size(); i++) {
+            String violations = BulkRows.violations(validator, patches.get(i));
+            if (violations != null) {
+                results.add(BulkItemResult.failure(i, HttpStatus.BAD_REQUEST.value(), violations));
+            } else if (!requestIds.add(patches.get(i).getId())) {
+                results.add(BulkItemResult.failure(i, HttpStatus.CONFLICT.value(),
+                        TASK_DUPLICATED_IN_REQUEST));
+            } else {
+                results.add(null);
+            }
         }
-        taskRepository.save(task);
-        return taskMapper.toDto(task);
+        Map<Long, Task> tasksById = new HashMap<>();
+        taskRepository.findAllById(requestIds).forEach(task -> tasksById.put(task.getId(), task));
+        Set<Long> existingUserIds = findExistingUserIds(patches.stream()
+                .filter(Objects::nonNull)
+                .map(TaskPatchRequest::getUserId)
+                .filter(Objects::nonNull)
+                .toList());
+
+        List<Integer> updated = new ArrayList<>();
+        List<Long> previousOwners = new ArrayList<>();
+        List<Long> movedIds = new ArrayList<>();
+        for (int i = 0; i < patches.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            TaskPatchRequest patch = patches.get(i);
+            Task task = tasksById.get(patch.getId());
+            if (task == null) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.NOT_FOUND.value(),
+                        String.format(TASK_WITH_ID_NOT_FOUND, patch.getId())));
+            } else if (patch.getVersion() != null && patch.getVersion() != task.getVersion()) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.PRECONDITION_FAILED.value(),
+                        String.format(TASK_VERSION_CHANGED, patch.getId(), task.getVersion())));
+            } else if (patch.getUserId() != null && !existingUserIds.contains(patch.getUserId())) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.NOT_FOUND.value(),
+                        String.format(USER_WITH_ID_NOT_FOUND, patch.getUserId())));
+            } else {
+                previousOwners.add(task.getUser().getId());
+                if (patch.getUserId() != null && patch.getUserId() != task.getUser().getId()) {
+                    movedIds.add(task.getId());
+                }
+                updated.add(i);
+            }
+        }
+        taskChangeService.recordTombstones(movedIds);
+        updated.forEach(i -> applyPatch(tasksById.get(patches.get(i).getId()), patches.get(i)));
+        taskRepository.flush();
+        taskChangeService.recordSaved(updated.stream().map(i -> patches.get(i).getId()).toList());
+        for (int k = 0; k < updated.size(); k++) {
+            int i = updated.get(k);
+            TaskDtoResponse taskDtoResponse = taskMapper.toDto(tasksById.get(patches.get(i).getId()));
+            taskCache.put(taskDtoResponse.getId(), taskDtoResponse);
+            long previousUserId = previousOwners.get(k);
+            if (taskDtoResponse.getUserId() != previousUserId) {
+                userTaskIdsCache.removeTask(previousUserId, taskDtoResponse.getId());
+                userTaskIdsCache.addTask(taskDtoResponse.getUserId(), taskDtoResponse.getId());
+            }
+            results.set(i, BulkItemResult.success(i, HttpStatus.OK.value(), taskDtoResponse));
+        }
+        return results;
+    }
+
+    public List<BulkItemResult<Long>> deleteTasks(List<Long> ids) {
+        checkBulkSize(ids);
+        List<BulkItemResult<Long>> results = new ArrayList<>(ids.size());
+        Set<Long> requestIds = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id == null || id < 1) {
+                results.add(BulkItemResult.failure(i, HttpStatus.BAD_REQUEST.value(),
+                        "Id должен быть больше 0"));
+            } else if (!requestIds.add(id)) {
+                results.add(BulkItemResult.failure(i, HttpStatus.CONFLICT.value(),
+                        TASK_DUPLICATED_IN_REQUEST));
+            } else {
+                results.add(null);
+            }
+        }
+        Map<Long, Long> ownerByTaskId = new HashMap<>();
+        if (!requestIds.isEmpty()) {
+            taskRepository.findDtosByIds(requestIds).forEach(
+                    task -> ownerByTaskId.put(task.getId(), task.getUserId()));
+        }
+        if (!ownerByTaskId.isEmpty()) {
+            taskChangeService.recordTombstones(ownerByTaskId.keySet());
+            taskRepository.deleteAllByIdInBatch(ownerByTaskId.keySet());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            long id = ids.get(i);
+            Long ownerId = ownerByTaskId.get(id);
+            if (ownerId == null) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.NOT_FOUND.value(),
+                        String.format(TASK_WITH_ID_NOT_FOUND, id)));
+                continue;
+            }
+            taskCache.remove(id);
+            userTaskIdsCache.removeTask(ownerId, id);
+            results.set(i, BulkItemResult.success(i, HttpStatus.OK.value(), id));
+        }
+        return results;
+    }
+
+    private void applyPatch(Task task, TaskPatchRequest patch) {
+        if (patch.getTitle() != null) {
+            task.setTitle(patch.getTitle());
+        }
+        if (patch.getContent() != null) {
+            task.setContent(patch.getContent());
+        }
+        if (patch.getIsCompleted() != null) {
+            task.setIsCompleted(patch.getIsCompleted());
+        }
+        if (patch.getDeadlineDate() != null) {
+            task.setDeadlineDate(patch.getDeadlineDate());
+        }
+        if (patch.getIsImportant() != null) {
+            task.setIsImportant(patch.getIsImportant());
+        }
+        if (patch.getUserId() != null && patch.getUserId() != task.getUser().getId()) {
+            task.setUser(userRepository.getReferenceById(patch.getUserId()));
+        }
+    }
+
+    private Set<Long> findExistingUserIds(List<Long> userIds) {
+        Set<Long> distinct = new HashSet<>(userIds);
+        distinct.remove(null);
+        if (distinct.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(userRepository.findExistingIds(distinct));
     }
 
-    public void deleteTaskById(long id) {
-        if (!taskRepository.existsById(id)) {
-            throw new NotFoundException(
-                String.format(TASK_WITH_ID_NOT_FOUND, id));
+    private static void checkBulkSize(List<?> rows) {
+        if (rows.isEmpty() || rows.size() > BULK_MAX_ITEMS) {
+            throw new InvalidInputException(
+                    "Количество элементов должно быть от 1 до " + BULK_MAX_ITEMS);
         }
-        taskRepository.deleteById(id);
     }
 }
@@ -2,21 +2,37 @@ package com.vlad.todo.service;
 
 import static com.vlad.todo.service.GroupService.GROUP_WITH_ID_NOT_FOUND;
 
+import com.vlad.todo.cache.CachedGroup;
+import com.vlad.todo.cache.GroupCache;
+import com.vlad.todo.cache.TaskCache;
 import com.vlad.todo.cache.UserCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.UserDtoRequest;
 import com.vlad.todo.dto.UserDtoResponse;
 import com.vlad.todo.exception.AlreadyExistsException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.UserMapper;
-import com.vlad.todo.model.Group;
 import com.vlad.todo.model.User;
 import com.vlad.todo.repository.GroupRepository;
+import com.vlad.todo.repository.TaskRepository;
 import com.vlad.todo.repository.UserRepository;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
@@ -24,35 +40,56 @@ import org.springframework.stereotype.Service;
 public class UserService {
 
     public static final String USER_WITH_ID_NOT_FOUND = "Пользователь с id %d не найден";
+    public static final String USER_VERSION_CHANGED =
+            "Пользователь с id %d был изменен, текущая версия %d";
+    public static final String USER_ALREADY_EXISTS =
+            "Пользователь с такой-же почтой/телефоном уже существует";
+    public static final String USER_DUPLICATED_IN_REQUEST =
+            "Почта или телефон повторяются в запросе";
+    // bounds both the IN list size and the persistence context between flushes
+    static final int BULK_CHUNK_SIZE = 1000;
+
     private final UserMapper userMapper;
     private final UserRepository userRepository;
     private final GroupRepository groupRepository;
+    private final TaskRepository taskRepository;
     private final UserCache userCache;
+    private final TaskCache taskCache;
+    private final UserTaskIdsCache userTaskIdsCache;
+    private final GroupCache groupCache;
+    private final PageCursorCodec pageCursorCodec;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TaskChangeService taskChangeService;
 
+    @Transactional(readOnly = true)
     public List<UserDtoResponse> findAll() {
-        List<UserDtoResponse> usersDtoResponse = new ArrayList<>();
-        userRepository.findAll().forEach(
-                user -> usersDtoResponse.add(userMapper.toDto(user)));
-        return usersDtoResponse;
+        return userRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public PageResponse<UserDtoResponse> findPage(String cursor, Integer size) {
+        long afterId = pageCursorCodec.decode(cursor);
+        int pageSize = pageCursorCodec.resolveSize(size);
+        List<UserDtoResponse> rows = userRepository
+                .findDtoPageAfter(afterId, pageCursorCodec.lookahead(pageSize));
+        return pageCursorCodec.toPage(rows, pageSize, UserDtoResponse::getId);
     }
 
+    @Transactional(readOnly = true)
     public UserDtoResponse findById(long id) {
-        UserDtoResponse cachedUser = userCache.get(id);
-        if (cachedUser != null) {
-            return cachedUser;
+        UserDtoResponse userDtoResponse = userCache.get(id, userId ->
+                userRepository.findDtoById(userId.longValue()).orElse(null));
+        if (userDtoResponse == null) {
+            throw new NotFoundException(String.format(USER_WITH_ID_NOT_FOUND, id));
         }
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(USER_WITH_ID_NOT_FOUND, id)));
-        userCache.put(id, userMapper.toDto(user));
-        return userMapper.toDto(user);
+        return userDtoResponse;
     }
 
     public UserDtoResponse save(UserDtoRequest userDtoRequest) {
         if (userRepository.existsByEmail(userDtoRequest.getEmail())
                 || userRepository.existsByPhone(userDtoRequest.getPhone())) {
-            throw new AlreadyExistsException(
-                    "Пользователь с такой-же почтой/телефоном уже существует");
+            throw new AlreadyExistsException(USER_ALREADY_EXISTS);
         }
         User user = userMapper.toEntity(userDtoRequest);
         userRepository.save(user);
@@ -60,80 +97,174 @@ public class UserService {
         return userMapper.toDto(user);
     }
 
-    public UserDtoResponse updateUser(long id, UserDtoRequest userDtoRequest) {
-        User user = userRepository.findById(id)
+    public UserDtoResponse updateUser(long id, UserDtoRequest userDtoRequest,
+                                      Long expectedVersion) {
+        int updated = userRepository.updatePartially(id, userDtoRequest.getFirstName(),
+                userDtoRequest.getLastName(), userDtoRequest.getEmail(), userDtoRequest.getPhone(),
+                expectedVersion);
+        if (updated == 0) {
+            throw rejectedWrite(id);
+        }
+        UserDtoResponse userDtoResponse = userRepository.findDtoById(id)
                 .orElseThrow(() -> new NotFoundException(
                         String.format(USER_WITH_ID_NOT_FOUND, id)));
+        userCache.put(id, userDtoResponse);
+        return userDtoResponse;
+    }
 
-        if (userDtoRequest.getEmail() != null) {
-            user.setEmail(userDtoRequest.getEmail());
+    // the row is locked and its version checked before the set-based deletes, which keep the
+    // statement count independent of how many tasks the user has
+    public void deleteUserById(long id, Long expectedVersion) {
+        long currentVersion = userRepository.lockVersionById(id)
+                .orElseThrow(() -> new NotFoundException(String.format(USER_WITH_ID_NOT_FOUND, id)));
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new PreconditionFailedException(
+                    String.format(USER_VERSION_CHANGED, id, currentVersion));
         }
-        if (userDtoRequest.getPhone() != null) {
-            user.setPhone(userDtoRequest.getPhone());
+        List<Long> groupIds = groupRepository.findGroupIdsByMember(id);
+        List<Long> taskIds = taskRepository.findIdsByUserId(id);
+        groupRepository.removeMemberFromAllGroups(id);
+        taskChangeService.recordTombstonesForUser(id);
+        taskRepository.removeByUserId(id);
+        userRepository.removeById(id, null);
+        groupIds.forEach(groupId -> groupCache.removeMember(groupId, id));
+        taskIds.forEach(taskCache::remove);
+        userCache.remove(id);
+        userTaskIdsCache.remove(id);
+    }
+
+    private RuntimeException rejectedWrite(long id) {
+        return userRepository.findVersionById(id)
+                .<RuntimeException>map(version -> new PreconditionFailedException(
+                        String.format(USER_VERSION_CHANGED, id, version)))
+                .orElseGet(() -> new NotFoundException(String.format(USER_WITH_ID_NOT_FOUND, id)));
+    }
+
+    // missing users are loaded in one query; ids that no longer exist are skipped
+    @Transactional(readOnly = true)
+    public List<UserDtoResponse> findAllByIds(Collection<Long> ids) {
+        List<UserDtoResponse> usersDtoResponse = new ArrayList<>(ids.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : ids) {
+            UserDtoResponse cachedUser = userCache.get(id);
+            usersDtoResponse.add(cachedUser);
+            if (cachedUser == null) {
+                missingIds.add(id);
+            }
         }
-        if (userDtoRequest.getLastName() != null) {
-            user.setLastName(userDtoRequest.getLastName());
+        if (missingIds.isEmpty()) {
+            return usersDtoResponse;
         }
-        if (userDtoRequest.getFirstName() != null) {
-            user.setFirstName(userDtoRequest.getFirstName());
+        Map<Long, UserDtoResponse> loaded = userRepository.findDtosByIds(missingIds).stream()
+                .collect(Collectors.toMap(UserDtoResponse::getId, Function.identity()));
+        loaded.forEach(userCache::put);
+        List<UserDtoResponse> resolved = new ArrayList<>(usersDtoResponse.size());
+        int missingIndex = 0;
+        for (UserDtoResponse userDtoResponse : usersDtoResponse) {
+            if (userDtoResponse == null) {
+                userDtoResponse = loaded.get(missingIds.get(missingIndex++));
+            }
+            if (userDtoResponse != null) {
+                resolved.add(userDtoResponse);
+            }
         }
-        userRepository.save(user);
-        userCache.put(user.getId(), userMapper.toDto(user));
-        return userMapper.toDto(user);
-    }
-
-    public void deleteUserById(long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(USER_WITH_ID_NOT_FOUND, id)));
-        user.getGroups().forEach(group -> group.getUsers().remove(user));
-        userCache.remove(id);
-        userRepository.deleteById(id);
+        return resolved;
     }
 
+    @Transactional(readOnly = true)
     public List<UserDtoResponse> findUsersByGroup(String groupName) {
-        List<User> users = userRepository.findUsersByGroupName(groupName);
-        List<UserDtoResponse> usersDtoResponse = new ArrayList<>();
-        users.forEach(user -> usersDtoResponse.add(userMapper.toDto(user)));
-        return usersDtoResponse;
+        CachedGroup cachedGroup = groupCache.getByName(groupName);
+        if (cachedGroup != null) {
+            return findAllByIds(cachedGroup.getMemberIds().stream().sorted().toList());
+        }
+        return userRepository.findDtosByGroupName(groupName);
     }
 
     public void addUserToGroup(long userId, long groupId) {
-        Group group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(GROUP_WITH_ID_NOT_FOUND, groupId)));
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(USER_WITH_ID_NOT_FOUND, userId)));
-        group.addUser(user);
-        groupRepository.save(group);
+        checkMembershipTargets(userId, groupId);
+        groupRepository.addMembers(groupId, List.of(userId));
+        groupCache.addMember(groupId, userId);
     }
 
     public void removeUserFromGroup(long userId, long groupId) {
-        Group group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(GROUP_WITH_ID_NOT_FOUND, groupId)));
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException(
-                        String.format(USER_WITH_ID_NOT_FOUND, userId)));
-        group.removeUser(user);
-        groupRepository.save(group);
+        checkMembershipTargets(userId, groupId);
+        groupRepository.removeMembers(groupId, List.of(userId));
+        groupCache.removeMember(groupId, userId);
     }
 
+    private void checkMembershipTargets(long userId, long groupId) {
+        if (!groupRepository.existsById(groupId)) {
+            throw new NotFoundException(String.format(GROUP_WITH_ID_NOT_FOUND, groupId));
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException(String.format(USER_WITH_ID_NOT_FOUND, userId));
+        }
+    }
+
+    // reports every row instead of failing the whole request
     @Transactional
-    public List<UserDtoResponse> saveAll(List<UserDtoRequest> userDtoRequests) {
-        return userDtoRequests.stream()
-                .map(userDtoRequest -> {
-                    if (userRepository.existsByEmail(userDtoRequest.getEmail())
-                            || userRepository.existsByPhone(userDtoRequest.getPhone())) {
-                        throw new AlreadyExistsException(
-                                "Пользователь с такой-же почтой/телефоном уже существует");
-                    }
-
-                    User user = userMapper.toEntity(userDtoRequest);
-                    userRepository.save(user);
-                    return userMapper.toDto(user);
-                })
-                .toList();
+    public List<BulkItemResult<UserDtoResponse>> saveAll(List<UserDtoRequest> userDtoRequests) {
+        List<BulkItemResult<UserDtoResponse>> results = new ArrayList<>(userDtoRequests.size());
+        List<Integer> candidates = new ArrayList<>(userDtoRequests.size());
+        Set<String> requestEmails = new HashSet<>();
+        Set<String> requestPhones = new HashSet<>();
+        for (int i = 0; i < userDtoRequests.size(); i++) {
+            results.add(null);
+            UserDtoRequest userDtoRequest = userDtoRequests.get(i);
+            String violations = BulkRows.violations(validator, userDtoRequest);
+            if (violations != null) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.BAD_REQUEST.value(), violations));
+            } else if (requestEmails.contains(userDtoRequest.getEmail())
+                    || requestPhones.contains(userDtoRequest.getPhone())) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.CONFLICT.value(),
+                        USER_DUPLICATED_IN_REQUEST));
+            } else {
+                requestEmails.add(userDtoRequest.getEmail());
+                requestPhones.add(userDtoRequest.getPhone());
+                candidates.add(i);
+            }
+        }
+
+        Set<String> existingEmails = findExisting(requestEmails, userRepository::findExistingEmails);
+        Set<String> existingPhones = findExisting(requestPhones, userRepository::findExistingPhones);
+        List<Integer> accepted = new ArrayList<>(candidates.size());
+        for (int i : candidates) {
+            UserDtoRequest userDtoRequest = userDtoRequests.get(i);
+            if (existingEmails.contains(userDtoRequest.getEmail())
+                    || existingPhones.contains(userDtoRequest.getPhone())) {
+                results.set(i, BulkItemResult.failure(i, HttpStatus.CONFLICT.value(),
+                        USER_ALREADY_EXISTS));
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        for (int from = 0; from < accepted.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = accepted.subList(from,
+                    Math.min(from + BULK_CHUNK_SIZE, accepted.size()));
+            List<User> users = new ArrayList<>(chunk.size());
+            chunk.forEach(i -> users.add(userMapper.toEntity(userDtoRequests.get(i))));
+            userRepository.saveAll(users);
+            userRepository.flush();
+            for (int k = 0; k < chunk.size(); k++) {
+                UserDtoResponse userDtoResponse = userMapper.toDto(users.get(k));
+                userCache.put(userDtoResponse.getId(), userDtoResponse);
+                results.set(chunk.get(k), BulkItemResult.success(chunk.get(k),
+                        HttpStatus.CREATED.value(), userDtoResponse));
+            }
+            entityManager.clear();
+        }
+        return results;
+    }
+
+    private static Set<String> findExisting(Set<String> values,
+                                            Function<List<String>, List<String>> lookup) {
+        Set<String> existing = new HashSet<>();
+        List<String> pending = new ArrayList<>(values);
+        for (int from = 0; from < pending.size(); from += BULK_CHUNK_SIZE) {
+            existing.addAll(lookup.apply(
+                    pending.subList(from, Math.min(from + BULK_CHUNK_SIZE, pending.size()))));
+        }
+        return existing;
     }
 }
@@ -0,0 +1,7 @@
+-- users used IDENTITY before users_seq; a sequence behind the existing ids is moved past them once
+SELECT setval('users_seq', (SELECT MAX(id) FROM users))
+WHERE (SELECT last_value FROM users_seq) < (SELECT MAX(id) FROM users);
+
+-- same for tasks, which used IDENTITY before tasks_seq
+SELECT setval('tasks_seq', (SELECT MAX(id) FROM tasks))
+WHERE (SELECT last_value FROM tasks_seq) < (SELECT MAX(id) FROM tasks);
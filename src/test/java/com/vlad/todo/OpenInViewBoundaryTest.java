@@ -0,0 +1,54 @@
+package com.vlad.todo;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import jakarta.persistence.Entity;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Controller;
+import org.springframework.stereotype.Service;
+
+// open-in-view is off, so an entity handed to the web layer could fail on its first lazy access
+class OpenInViewBoundaryTest {
+
+    @Test
+    void servicesAndControllers_ShouldNotExposeEntities() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner =
+                new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Service.class));
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Controller.class));
+        for (BeanDefinition definition : scanner.findCandidateComponents("com.vlad.todo")) {
+            Class<?> component = Class.forName(definition.getBeanClassName());
+            for (Method method : component.getDeclaredMethods()) {
+                if (!Modifier.isPublic(method.getModifiers())) {
+                    continue;
+                }
+                assertFalse(mentionsEntity(method.getGenericReturnType()),
+                        component.getSimpleName() + "." + method.getName() + " returns an entity");
+            }
+        }
+    }
+
+    private static boolean mentionsEntity(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz.isAnnotationPresent(Entity.class)
+                    || (clazz.isArray() && mentionsEntity(clazz.getComponentType()));
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return Arrays.stream(parameterized.getActualTypeArguments())
+                    .anyMatch(OpenInViewBoundaryTest::mentionsEntity);
+        }
+        if (type instanceof WildcardType wildcard) {
+            return Arrays.stream(wildcard.getUpperBounds()).anyMatch(OpenInViewBoundaryTest::mentionsEntity);
+        }
+        return false;
+    }
+}
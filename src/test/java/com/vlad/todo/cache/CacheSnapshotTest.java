@@ -0,0 +1,66 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CacheSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndRead_ShouldRoundTripKeysInOrder() throws IOException {
+        Path file = dir.resolve("nested/users.snapshot");
+
+        CacheSnapshot.write(file, List.of(new KeyFrequency<>(7L, 15), new KeyFrequency<>(3L, 2)));
+        List<KeyFrequency<Long>> keys = CacheSnapshot.read(file, 10);
+
+        assertEquals(2, keys.size());
+        assertEquals(7L, keys.get(0).getKey());
+        assertEquals(15, keys.get(0).getFrequency());
+        assertEquals(3L, keys.get(1).getKey());
+        assertFalse(Files.exists(dir.resolve("nested/users.snapshot.tmp")));
+    }
+
+    @Test
+    void read_ShouldReturnEmptyList_WhenFileIsMissing() throws IOException {
+        assertTrue(CacheSnapshot.read(dir.resolve("missing.snapshot"), 10).isEmpty());
+    }
+
+    @Test
+    void read_ShouldRejectForeignFiles() throws IOException {
+        Path file = dir.resolve("garbage.snapshot");
+        Files.writeString(file, "not a snapshot at all");
+
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file, 10));
+    }
+
+    @Test
+    void read_ShouldRejectCountsTheFileCannotHold() throws IOException {
+        Path file = dir.resolve("users.snapshot");
+        CacheSnapshot.write(file, List.of(new KeyFrequency<>(7L, 15), new KeyFrequency<>(3L, 2)));
+        byte[] valid = Files.readAllBytes(file);
+
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file, 1));
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 4));
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file, 10));
+
+        byte[] negative = valid.clone();
+        negative[8] = (byte) 0x80;
+        Files.write(file, negative);
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file, 10));
+
+        byte[] huge = valid.clone();
+        huge[8] = 0x7F;
+        Files.write(file, huge);
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file, Integer.MAX_VALUE));
+    }
+}
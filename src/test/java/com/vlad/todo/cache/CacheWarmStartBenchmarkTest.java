@@ -0,0 +1,109 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Hit rate over the first requests after a restart, with and without a
+ * preload from a snapshot of the previous instance, under a Zipf-distributed
+ * workload. Also reports how long writing, reading and preloading the
+ * snapshot take. Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=CacheWarmStartBenchmarkTest}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CacheWarmStartBenchmarkTest {
+
+    private static final int KEY_SPACE = 500_000;
+    private static final int CAPACITY = 10_000;
+    private static final int STEADY_STATE_REQUESTS = 2_000_000;
+    private static final int FIRST_MINUTE_REQUESTS = 60_000;
+    private static final int EARLY_REQUESTS = 5_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void warmStart_ShouldRaiseFirstMinuteHitRate() throws IOException {
+        double[] cdf = zipfCdf(KEY_SPACE, 1.0);
+        LfuCache<Long> previous = cache();
+        replay(previous, cdf, new SplittableRandom(1), STEADY_STATE_REQUESTS);
+
+        long start = System.nanoTime();
+        Path file = dir.resolve("bench.snapshot");
+        CacheSnapshot.write(file, previous.hottestKeys(CAPACITY));
+        long written = System.nanoTime();
+        List<KeyFrequency<Long>> keys = CacheSnapshot.read(file, CAPACITY);
+        LfuCache<Long> warm = cache();
+        for (KeyFrequency<Long> key : keys) {
+            warm.preload(key.getKey(), key.getKey(), key.getFrequency());
+        }
+        long preloaded = System.nanoTime();
+
+        LfuCache<Long> cold = cache();
+        double warmEarly = replay(warm, cdf, new SplittableRandom(2), EARLY_REQUESTS);
+        double coldEarly = replay(cold, cdf, new SplittableRandom(2), EARLY_REQUESTS);
+        double warmRest = replay(warm, cdf, new SplittableRandom(3), FIRST_MINUTE_REQUESTS - EARLY_REQUESTS);
+        double coldRest = replay(cold, cdf, new SplittableRandom(3), FIRST_MINUTE_REQUESTS - EARLY_REQUESTS);
+        log.info("Snapshot of {} keys: write {} ms, read and preload {} ms",
+                keys.size(), (written - start) / 1_000_000, (preloaded - written) / 1_000_000);
+        log.info("Hit rate over first {} requests: {} cold, {} warm", EARLY_REQUESTS,
+                format(coldEarly), format(warmEarly));
+        log.info("Hit rate over first {} requests: {} cold, {} warm", FIRST_MINUTE_REQUESTS,
+                format(average(coldEarly, coldRest)), format(average(warmEarly, warmRest)));
+        assertTrue(warmEarly > coldEarly + 0.2,
+                "Warm start hit rate " + warmEarly + " is not clearly above cold " + coldEarly);
+        assertTrue(average(warmEarly, warmRest) > average(coldEarly, coldRest));
+    }
+
+    private static double average(double early, double rest) {
+        return (early * EARLY_REQUESTS + rest * (FIRST_MINUTE_REQUESTS - EARLY_REQUESTS))
+                / FIRST_MINUTE_REQUESTS;
+    }
+
+    private static String format(double hitRate) {
+        return String.format("%.3f", hitRate);
+    }
+
+    private static LfuCache<Long> cache() {
+        return new LfuCache<>("bench", CAPACITY) {
+        };
+    }
+
+    private static double replay(LfuCache<Long> cache, double[] cdf, SplittableRandom random,
+                                 int requests) {
+        long before = cache.getStats().getHits();
+        for (int i = 0; i < requests; i++) {
+            long key = sample(cdf, random);
+            cache.get(key, id -> id);
+        }
+        return (cache.getStats().getHits() - before) / (double) requests;
+    }
+
+    private static double[] zipfCdf(int keys, double exponent) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static long sample(double[] cdf, SplittableRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+}
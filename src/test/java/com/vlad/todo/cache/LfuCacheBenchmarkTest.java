@@ -0,0 +1,96 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+// run with mvn test -Dbenchmark=true -Dtest=LfuCacheBenchmarkTest
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LfuCacheBenchmarkTest {
+
+    private static final int[] CAPACITIES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int OPERATIONS = 2_000_000;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final double MAX_OVERHEAD_GROWTH = 3;
+
+    // a HashMap of the same size takes the same CPU cache misses, so the ratio isolates LFU work
+    @Test
+    void perOperationOverhead_ShouldStayFlat_FromThousandToMillionEntries() {
+        double smallest = 0;
+        double largest = 0;
+        for (int capacity : CAPACITIES) {
+            double cacheNanos = median(() -> measureCache(capacity));
+            double mapNanos = median(() -> measureMap(capacity));
+            double overhead = cacheNanos / mapNanos;
+            log.info("LfuCache capacity {}: {} ns/op, {}x a HashMap", capacity,
+                    String.format("%.1f", cacheNanos), String.format("%.2f", overhead));
+            if (capacity == CAPACITIES[0]) {
+                smallest = overhead;
+            }
+            largest = overhead;
+        }
+        assertTrue(largest < smallest * MAX_OVERHEAD_GROWTH,
+                "Overhead over a HashMap grew from " + smallest + "x to " + largest + "x");
+    }
+
+    private interface Run {
+        double nanosPerOp();
+    }
+
+    private static double median(Run run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run.nanosPerOp();
+        }
+        double[] results = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            results[i] = run.nanosPerOp();
+        }
+        Arrays.sort(results);
+        return results[MEASURED_RUNS / 2];
+    }
+
+    private static double measureCache(int capacity) {
+        LfuCache<Long> cache = new LfuCache<>("test", capacity) {
+        };
+        for (long i = 0; i < capacity; i++) {
+            cache.put(i, i);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long keySpace = capacity * 2L;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextLong(keySpace);
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    // same access pattern without eviction; a miss replaces a random resident key
+    private static double measureMap(int capacity) {
+        Map<Long, Long> map = new HashMap<>();
+        for (long i = 0; i < capacity; i++) {
+            map.put(i, i);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long keySpace = capacity * 2L;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextLong(keySpace);
+            if (map.get(key) == null) {
+                map.remove(random.nextLong(keySpace));
+                map.put(key, key);
+            }
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+}
@@ -0,0 +1,93 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+class LfuCacheManagerTest {
+
+    private LfuCache<String> users;
+    private LfuCacheManager manager;
+
+    @BeforeEach
+    void setUp() {
+        users = new LfuCache<>("users", 10, 1) {
+        };
+        LfuCache<String> tasks = new LfuCache<>("tasks", 10, 1) {
+        };
+        manager = new LfuCacheManager(List.of(users, tasks));
+    }
+
+    @Test
+    void getCache_ShouldExposeOnlyConfiguredCaches() {
+        assertEquals(List.of("users", "tasks"), List.copyOf(manager.getCacheNames()));
+        assertSame(users, manager.getCache("users").getNativeCache());
+        assertNull(manager.getCache("unknown"));
+    }
+
+    @Test
+    void springCache_ShouldReadAndWriteUnderlyingLfuCache() {
+        Cache cache = manager.getCache("users");
+
+        cache.put(1L, "Vlad");
+        users.put(2L, "Anna");
+
+        assertEquals("Vlad", users.get(1L));
+        assertEquals("Anna", cache.get(2, String.class));
+        assertEquals("Anna", cache.get(2L).get());
+
+        cache.evict(1L);
+        cache.put(2L, null);
+
+        assertNull(cache.get(1L));
+        assertNull(users.get(2L));
+        assertEquals(2, users.getStats().getRemovals());
+    }
+
+    @Test
+    void springCache_ShouldSkipTypeCheck_WhenTypeIsNull() {
+        Cache cache = manager.getCache("users");
+        users.put(5L, "Oleg");
+
+        assertEquals("Oleg", cache.get(5L, (Class<String>) null));
+        assertNull(cache.get(6L, (Class<String>) null));
+        assertThrows(IllegalStateException.class, () -> cache.get(5L, Integer.class));
+    }
+
+    @Test
+    void springCache_ShouldLoadOnceThroughValueLoader() {
+        Cache cache = manager.getCache("users");
+        int[] calls = new int[1];
+
+        assertEquals("loaded", cache.get(3L, () -> {
+            calls[0]++;
+            return "loaded";
+        }));
+        assertEquals("loaded", cache.get(3L, () -> {
+            calls[0]++;
+            return "again";
+        }));
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    void springCache_ShouldWrapLoaderFailure() {
+        Cache cache = manager.getCache("users");
+
+        Cache.ValueRetrievalException exception = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get(4L, () -> {
+                    throw new Exception("db down");
+                }));
+        assertEquals("db down", exception.getCause().getMessage());
+    }
+
+    @Test
+    void springCache_ShouldRejectNonNumericKeys() {
+        Cache cache = manager.getCache("users");
+
+        assertThrows(IllegalArgumentException.class, () -> cache.put("vlad", "Vlad"));
+    }
+}
@@ -0,0 +1,630 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LfuCacheTest {
+
+    private LfuCache<String> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LfuCache<>("test", 3, 1) {
+        };
+    }
+
+    @Test
+    void get_ShouldReturnNull_WhenKeyIsMissing() {
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void put_ShouldStoreAndReplaceValue() {
+        cache.put(1L, "one");
+        cache.put(1L, "uno");
+
+        assertEquals("uno", cache.get(1L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void put_ShouldEvictLeastFrequentlyUsed_WhenFull() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(3L);
+
+        cache.put(4L, "four");
+
+        assertNull(cache.get(2L));
+        assertEquals("one", cache.get(1L));
+        assertEquals("three", cache.get(3L));
+        assertEquals("four", cache.get(4L));
+    }
+
+    @Test
+    void put_ShouldEvictLeastRecentlyUsed_WhenFrequenciesAreEqual() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.get(2L);
+        cache.get(1L);
+        cache.get(3L);
+
+        cache.put(4L, "four");
+
+        assertNull(cache.get(2L));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void put_ShouldPreferNewEntryForEviction_OverFrequentOnes() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.get(1L);
+        cache.get(2L);
+        cache.get(3L);
+
+        cache.put(4L, "four");
+        cache.put(5L, "five");
+
+        assertNull(cache.get(4L));
+        assertEquals("five", cache.get(5L));
+    }
+
+    @Test
+    void remove_ShouldDropEntryAndFreeCapacity() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+
+        cache.remove(2L);
+        cache.put(4L, "four");
+
+        assertNull(cache.get(2L));
+        assertEquals("one", cache.get(1L));
+        assertEquals("three", cache.get(3L));
+        assertEquals("four", cache.get(4L));
+    }
+
+    @Test
+    void computeIfPresent_ShouldReplaceOnlyCachedValues() {
+        cache.put(1L, "one");
+
+        cache.computeIfPresent(1L, value -> value + "!");
+        cache.computeIfPresent(2L, value -> value + "!");
+
+        assertEquals("one!", cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+
+    @Test
+    void stats_ShouldCountHitsMissesPutsRemovalsAndEvictions() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(4L);
+        cache.put(4L, "four");
+        cache.remove(3L);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(3, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.75, stats.getHitRate());
+        assertEquals(4, stats.getPuts());
+        assertEquals(1, stats.getRemovals());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(1L, stats.getEvictionFrequencyHistogram().get("1"));
+    }
+
+    @Test
+    void stats_ShouldBucketEvictionsByFrequencyRange() {
+        assertEquals(0, CacheStats.bucketOf(0));
+        assertEquals(1, CacheStats.bucketOf(1));
+        assertEquals(2, CacheStats.bucketOf(3));
+        assertEquals(3, CacheStats.bucketOf(4));
+        assertEquals(CacheStats.HISTOGRAM_BUCKETS - 1, CacheStats.bucketOf(Integer.MAX_VALUE));
+        assertTrue(new CacheStats().getEvictionFrequencyHistogram().containsKey("4-7"));
+    }
+
+    @Test
+    void clear_ShouldRemoveAllEntries() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        cache.clear();
+        cache.put(3L, "three");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(1L));
+        assertEquals("three", cache.get(3L));
+    }
+
+    @Test
+    void constructor_ShouldSplitCapacityAcrossSegments() {
+        LfuCache<String> striped = new LfuCache<>("test", 64, 4) {
+        };
+        for (long i = 0; i < 1_000; i++) {
+            striped.put(i, "value");
+        }
+
+        assertTrue(striped.size() <= 64);
+        striped.verifyIntegrity();
+    }
+
+    @Test
+    void constructor_ShouldNotExceedCapacity_WhenItDoesNotDivideEvenly() {
+        for (int capacity : new int[] {3, 10, 100}) {
+            LfuCache<String> striped = new LfuCache<>("test", capacity, 16) {
+            };
+            for (long i = 0; i < 1_000; i++) {
+                striped.put(i, "value");
+            }
+
+            assertTrue(striped.size() <= capacity, "capacity " + capacity + ", size " + striped.size());
+            striped.verifyIntegrity();
+        }
+    }
+
+    @Test
+    void concurrentAccess_ShouldKeepSegmentsConsistent() throws Exception {
+        LfuCache<Long> shared = new LfuCache<>("test", 256, 8) {
+        };
+        int threads = 8;
+        int operations = 200_000;
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers.add(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < operations; i++) {
+                    long key = random.nextLong(1_024);
+                    int action = random.nextInt(10);
+                    if (action < 6) {
+                        Long value = shared.get(key);
+                        if (value != null && value != key) {
+                            throw new IllegalStateException("Key " + key + " mapped to " + value);
+                        }
+                    } else if (action < 9) {
+                        shared.put(key, key);
+                    } else {
+                        shared.remove(key);
+                    }
+                }
+                return null;
+            });
+        }
+
+        runConcurrently(workers);
+
+        assertTrue(shared.size() <= 256);
+        shared.verifyIntegrity();
+    }
+
+    @Test
+    void concurrentWriters_ShouldNotLoseUpdates() throws Exception {
+        int threads = 8;
+        int keysPerThread = 5_000;
+        LfuCache<Long> shared = new LfuCache<>("test", threads * keysPerThread * 2) {
+        };
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long offset = (long) t * keysPerThread;
+            workers.add(() -> {
+                for (long key = offset; key < offset + keysPerThread; key++) {
+                    shared.put(key, -key);
+                    shared.get(key);
+                }
+                return null;
+            });
+        }
+
+        runConcurrently(workers);
+
+        assertEquals(threads * keysPerThread, shared.size());
+        for (long key = 0; key < (long) threads * keysPerThread; key++) {
+            assertEquals(-key, shared.get(key));
+        }
+        shared.verifyIntegrity();
+    }
+
+    private static void runConcurrently(List<Callable<Void>> workers) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(workers.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> worker : workers) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return worker.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void offHeapTier_ShouldKeepEvictedEntries_AndPromoteThemOnGet() {
+        LfuCache<String> tiered = new LfuCache<>("test", 2, 1) {
+        };
+        tiered.enableOffHeapTier(OffHeapStore.SLAB_BYTES, OffHeapStoreTest.STRINGS);
+        tiered.put(1L, "one");
+        tiered.put(2L, "two");
+        tiered.get(2L);
+        tiered.put(3L, "three");
+        assertEquals(1, tiered.offHeapSize());
+
+        assertEquals("one", tiered.get(1L));
+
+        assertEquals(1, tiered.getStats().getOffHeapHits());
+        assertEquals(2, tiered.getStats().getHits());
+        assertEquals(2, tiered.size());
+        assertEquals(1, tiered.offHeapSize());
+    }
+
+    @Test
+    void offHeapTier_ShouldDropSpilledCopy_OnRemovePutAndCompute() {
+        LfuCache<String> tiered = new LfuCache<>("test", 1, 1) {
+        };
+        tiered.enableOffHeapTier(OffHeapStore.SLAB_BYTES, OffHeapStoreTest.STRINGS);
+        tiered.put(1L, "one");
+        tiered.put(2L, "two");
+        tiered.put(3L, "three");
+        assertEquals(2, tiered.offHeapSize());
+
+        assertEquals("one", tiered.remove(1L));
+        assertNull(tiered.computeIfPresent(2L, value -> value + "!"));
+        assertEquals(0, tiered.offHeapSize());
+        assertNull(tiered.get(1L));
+        assertNull(tiered.get(2L));
+    }
+
+    @Test
+    void offHeapTier_ShouldNotKeepEntry_RemovedWhileItIsSpilled() throws Exception {
+        CountDownLatch spilling = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        LfuCache<String> tiered = new LfuCache<>("test", 1, 1) {
+        };
+        tiered.enableOffHeapTier(OffHeapStore.SLAB_BYTES, new Serializer<>() {
+            @Override
+            public void write(String value, DataOutput out) throws IOException {
+                spilling.countDown();
+                try {
+                    removed.await(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                OffHeapStoreTest.STRINGS.write(value, out);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return OffHeapStoreTest.STRINGS.read(in);
+            }
+        });
+        tiered.put(1L, "one");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> evicting = pool.submit(() -> tiered.put(2L, "two"));
+            assertTrue(spilling.await(5, TimeUnit.SECONDS));
+            Future<String> removing = pool.submit(() -> tiered.remove(1L));
+
+            removing.get(5, TimeUnit.SECONDS);
+            removed.countDown();
+            evicting.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertNull(tiered.get(1L));
+        assertEquals(0, tiered.offHeapSize());
+    }
+
+    @Test
+    void removeIf_ShouldDropMatchingValues_FromBothTiers() {
+        LfuCache<String> tiered = new LfuCache<>("test", 2, 1) {
+        };
+        tiered.enableOffHeapTier(OffHeapStore.SLAB_BYTES, OffHeapStoreTest.STRINGS);
+        tiered.put(1L, "drop one");
+        tiered.put(2L, "keep two");
+        tiered.get(2L);
+        tiered.put(3L, "drop three");
+        tiered.put(4L, "keep four");
+        assertEquals(2, tiered.offHeapSize());
+
+        assertEquals(2, tiered.removeIf(value -> value.startsWith("drop")));
+
+        assertNull(tiered.get(1L));
+        assertNull(tiered.get(3L));
+        assertEquals("keep two", tiered.get(2L));
+        assertEquals("keep four", tiered.get(4L));
+        assertEquals(2, tiered.getStats().getRemovals());
+    }
+
+    @Test
+    void loadingGet_ShouldCacheLoadedValue_AndSkipLoaderOnHit() {
+        assertEquals("loaded", cache.get(1L, id -> "loaded"));
+        assertEquals("loaded", cache.get(1L, id -> {
+            throw new AssertionError("loader must not run on a hit");
+        }));
+        assertEquals(1, cache.getStats().getLoads());
+    }
+
+    @Test
+    void loadingGet_ShouldNotCacheNullResult() {
+        assertNull(cache.get(1L, id -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void loadingGet_ShouldPropagateLoaderFailure_ToWaitingCallers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> cache.get(1L, id -> {
+                loading.countDown();
+                await(release);
+                throw new IllegalStateException("db down");
+            }));
+            loading.await();
+            Future<String> waiter = pool.submit(() -> cache.get(1L, id -> "unexpected"));
+            while (cache.getStats().getCoalescedLoads() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> caller : List.of(leader, waiter)) {
+                Exception failure = assertThrows(Exception.class, caller::get);
+                assertInstanceOf(IllegalStateException.class, failure.getCause());
+                assertEquals("db down", failure.getCause().getMessage());
+            }
+            assertEquals(1, cache.getStats().getLoadFailures());
+            assertEquals(0, cache.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadingGet_ShouldNotCacheResult_WhenEntryIsWrittenDuringLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = pool.submit(() -> cache.get(1L, id -> {
+                loading.countDown();
+                await(release);
+                return "stale";
+            }));
+            loading.await();
+            cache.remove(1L);
+            release.countDown();
+
+            assertEquals("stale", leader.get());
+            assertNull(cache.get(1L));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void negativeCaching_ShouldAnswerMissingIdsWithoutLoading_UntilPut() {
+        cache.enableNegativeCaching(10, 60_000);
+        int[] loads = new int[1];
+
+        assertNull(cache.get(1L, id -> {
+            loads[0]++;
+            return null;
+        }));
+        assertNull(cache.get(1L, id -> {
+            loads[0]++;
+            return null;
+        }));
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.getStats().getNegativeHits());
+
+        cache.put(1L, "created");
+
+        assertEquals("created", cache.get(1L, id -> null));
+        assertEquals(0, cache.negativeSize());
+    }
+
+    @Test
+    void negativeCaching_ShouldCountNegativeHit_OnlyWhenLaterLookupIsAnswered() {
+        cache.enableNegativeCaching(10, 60_000);
+
+        cache.get(1L, id -> null);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getLoads());
+        assertEquals(0, stats.getNegativeHits());
+        assertEquals(1, cache.negativeSize());
+
+        cache.get(1L, id -> null);
+
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getLoads());
+        assertEquals(1, stats.getNegativeHits());
+        assertEquals(0, stats.getHits());
+        assertEquals(0.0, stats.getHitRate());
+    }
+
+    @Test
+    void negativeCaching_ShouldForgetMissingId_OnRemove() {
+        cache.enableNegativeCaching(10, 60_000);
+        cache.get(1L, id -> null);
+
+        cache.remove(1L);
+
+        assertEquals(0, cache.negativeSize());
+        assertEquals("inserted", cache.get(1L, id -> "inserted"));
+    }
+
+    @Test
+    void negativeCaching_ShouldExpireEntries() throws InterruptedException {
+        cache.enableNegativeCaching(10, 1);
+        cache.get(1L, id -> null);
+
+        Thread.sleep(5);
+
+        assertEquals("loaded", cache.get(1L, id -> "loaded"));
+    }
+
+    @Test
+    void negativeCaching_ShouldNotEvictCachedValues_DuringScanOfMissingIds() {
+        cache.enableNegativeCaching(4, 60_000);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        for (long id = 100; id < 1_000; id++) {
+            cache.get(id, missing -> null);
+        }
+
+        assertEquals(4, cache.negativeSize());
+        assertEquals("one", cache.get(1L));
+        assertEquals("two", cache.get(2L));
+    }
+
+    @Test
+    void expireAfterWrite_ShouldDropEntriesOlderThanTtl() throws InterruptedException {
+        cache.expireAfterWrite(500);
+        cache.put(1L, "one");
+        cache.computeIfPresent(1L, value -> value + "!");
+        assertEquals("one!", cache.get(1L));
+
+        Thread.sleep(600);
+
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().getExpirations());
+        assertEquals("reloaded", cache.get(1L, id -> "reloaded"));
+    }
+
+    @Test
+    void refreshAhead_ShouldServeOldValue_WhileReloadingInBackground() throws InterruptedException {
+        List<Runnable> scheduled = new ArrayList<>();
+        cache.expireAfterWrite(60_000);
+        cache.refreshAheadAfter(10, scheduled::add);
+        cache.put(1L, "old");
+        assertEquals("old", cache.get(1L, id -> "new"));
+        assertTrue(scheduled.isEmpty());
+
+        Thread.sleep(15);
+
+        assertEquals("old", cache.get(1L, id -> "new"));
+        assertEquals("old", cache.get(1L, id -> "newer"));
+        assertEquals(1, scheduled.size());
+
+        scheduled.get(0).run();
+
+        assertEquals("new", cache.get(1L));
+        assertEquals(1, cache.getStats().getRefreshes());
+        assertEquals(0, cache.getStats().getMisses());
+    }
+
+    @Test
+    void refreshAhead_ShouldDropEntry_WhenReloadFindsNothing() throws InterruptedException {
+        List<Runnable> scheduled = new ArrayList<>();
+        cache.refreshAheadAfter(1, scheduled::add);
+        cache.put(1L, "deleted in database");
+        Thread.sleep(5);
+
+        cache.get(1L, id -> null);
+        scheduled.get(0).run();
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void refreshAhead_ShouldKeepServing_WhenExecutorRejectsReload() throws InterruptedException {
+        cache.refreshAheadAfter(1, task -> {
+            throw new RejectedExecutionException("queue full");
+        });
+        cache.put(1L, "old");
+        Thread.sleep(5);
+
+        assertEquals("old", cache.get(1L, id -> "new"));
+        assertEquals("old", cache.get(1L, id -> "new"));
+        assertEquals(0, cache.getStats().getRefreshes());
+    }
+
+    @Test
+    void refreshAhead_ShouldNotOverwriteConcurrentPut() throws InterruptedException {
+        List<Runnable> scheduled = new ArrayList<>();
+        cache.refreshAheadAfter(1, scheduled::add);
+        cache.put(1L, "old");
+        Thread.sleep(5);
+        cache.get(1L, id -> "reloaded before update");
+
+        cache.put(1L, "updated");
+        scheduled.get(0).run();
+
+        assertNotEquals("reloaded before update", cache.get(1L));
+    }
+
+    @Test
+    void hottestKeys_ShouldListMostFrequentFirst_AcrossSegments() {
+        LfuCache<String> striped = new LfuCache<>("test", 64, 4) {
+        };
+        for (long id = 1; id <= 10; id++) {
+            striped.put(id, "v" + id);
+            for (int i = 0; i < id; i++) {
+                striped.get(id);
+            }
+        }
+
+        List<KeyFrequency<Long>> hottest = striped.hottestKeys(3);
+
+        assertEquals(List.of(10L, 9L, 8L), hottest.stream().map(KeyFrequency::getKey).toList());
+        assertEquals(11, hottest.get(0).getFrequency());
+    }
+
+    @Test
+    void preload_ShouldRestoreFrequency_WithoutTouchingStats() {
+        cache.preload(1L, "restored", 5);
+        cache.put(2L, "new");
+        cache.put(3L, "newer");
+        cache.put(4L, "newest");
+
+        assertEquals("restored", cache.get(1L));
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(3, cache.getStats().getPuts());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
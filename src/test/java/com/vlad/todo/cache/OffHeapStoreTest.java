@@ -0,0 +1,136 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class OffHeapStoreTest {
+
+    static final Serializer<String> STRINGS = new Serializer<>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            Serializer.writeString(out, value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return Serializer.readString(in);
+        }
+    };
+
+    @Test
+    void remove_ShouldReturnStoredValueOnce() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(OffHeapStore.SLAB_BYTES, STRINGS);
+
+        assertTrue(store.put(1L, "first"));
+        assertTrue(store.put(2L, "second"));
+
+        assertEquals("first", store.remove(1L));
+        assertNull(store.remove(1L));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void put_ShouldReplacePreviousRecord_EvenInAnotherSizeClass() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(2L * OffHeapStore.SLAB_BYTES, STRINGS);
+
+        store.put(1L, "short");
+        store.put(1L, "x".repeat(1000));
+
+        assertEquals(1, store.size());
+        assertEquals("x".repeat(1000), store.remove(1L));
+    }
+
+    @Test
+    void put_ShouldReuseFreedChunks_AndDropOldestWhenBudgetIsFull() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(OffHeapStore.SLAB_BYTES, STRINGS);
+        int chunks = OffHeapStore.SLAB_BYTES / 64;
+
+        for (long i = 0; i < chunks; i++) {
+            store.put(i, "v" + i);
+        }
+        store.remove(5L);
+        store.put(5L, "again");
+        assertEquals(chunks, store.size());
+
+        store.put(-1L, "newest");
+
+        assertEquals(OffHeapStore.SLAB_BYTES, store.allocatedBytes());
+        assertEquals(chunks, store.size());
+        assertNull(store.remove(0L));
+        assertEquals("newest", store.remove(-1L));
+        assertEquals("again", store.remove(5L));
+    }
+
+    @Test
+    void put_ShouldMoveSlabToNewSizeClass_WhenBudgetIsHeldByAnother() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(2L * OffHeapStore.SLAB_BYTES, STRINGS);
+        int chunks = OffHeapStore.SLAB_BYTES / 64;
+        for (long i = 0; i < 2L * chunks; i++) {
+            store.put(i, "v" + i);
+        }
+        assertEquals(2L * chunks, store.size());
+
+        assertTrue(store.put(-1L, "x".repeat(1000)));
+
+        assertEquals(2L * OffHeapStore.SLAB_BYTES, store.allocatedBytes());
+        assertEquals(chunks + 1, store.size());
+        assertNull(store.remove(0L));
+        assertEquals("v" + (2L * chunks - 1), store.remove(2L * chunks - 1));
+        assertEquals("x".repeat(1000), store.remove(-1L));
+        assertTrue(store.put(-2L, "y".repeat(1000)));
+    }
+
+    @Test
+    void put_ShouldRejectRecordsLargerThanBiggestChunk() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(OffHeapStore.SLAB_BYTES, STRINGS);
+
+        assertFalse(store.put(1L, "x".repeat(70_000)));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void clear_ShouldReleaseSlabs() {
+        OffHeapStore<Long, String> store = new OffHeapStore<>(OffHeapStore.SLAB_BYTES, STRINGS);
+        store.put(1L, "value");
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.allocatedBytes());
+        assertTrue(store.put(2L, "value"));
+    }
+
+    @Test
+    void serializers_ShouldRoundTripDtosWithNulls() {
+        OffHeapStore<Long, UserDtoResponse> users =
+                new OffHeapStore<>(OffHeapStore.SLAB_BYTES, UserCache.SERIALIZER);
+        UserDtoResponse user = new UserDtoResponse();
+        user.setId(7);
+        user.setFirstName("Влад");
+        user.setEmail("vlad@example.com");
+        users.put(7L, user);
+
+        OffHeapStore<Long, TaskDtoResponse> tasks =
+                new OffHeapStore<>(OffHeapStore.SLAB_BYTES, TaskCache.SERIALIZER);
+        TaskDtoResponse task = new TaskDtoResponse();
+        task.setId(3L);
+        task.setTitle("Задача");
+        task.setIsCompleted(false);
+        task.setDeadlineDate(LocalDate.of(2025, 1, 31));
+        task.setUserId(7L);
+        tasks.put(3L, task);
+
+        assertEquals(user, users.remove(7L));
+        assertEquals(task, tasks.remove(3L));
+    }
+}
@@ -0,0 +1,86 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.vlad.todo.dto.TaskDtoResponse;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compares full collection pauses with a task cache holding its whole working
+ * set on the heap against one that keeps a small heap tier and spills the rest
+ * off-heap. A full collection has to trace every live entry, so its pause grows
+ * with what the heap tier holds. Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=OffHeapTierBenchmarkTest}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OffHeapTierBenchmarkTest {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int OPERATIONS = 1_000_000;
+    private static final int FULL_COLLECTIONS = 5;
+    private static final long HEAP_ONLY_BYTES = 1L << 30;
+    private static final long SMALL_HEAP_BYTES = 16L << 20;
+    private static final long OFF_HEAP_BYTES = 512L << 20;
+
+    @Test
+    void offHeapTier_ShouldShortenFullGcPause_ForLargeWorkingSet() {
+        double heapOnly = measure(new TaskCache(HEAP_ONLY_BYTES, 0, 0, null, 0, 0, 0));
+        double tiered = measure(new TaskCache(SMALL_HEAP_BYTES, 0, 0, null, OFF_HEAP_BYTES, 0, 0));
+        log.info("Full GC pause: heap only {} ms, with off-heap tier {} ms",
+                String.format("%.1f", heapOnly), String.format("%.1f", tiered));
+        assertTrue(tiered < heapOnly,
+                "Off-heap tier pause " + tiered + " ms is not below heap-only " + heapOnly + " ms");
+    }
+
+    private double measure(TaskCache cache) {
+        for (long i = 0; i < ENTRIES; i++) {
+            cache.put(i, task(i));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long id = random.nextLong(ENTRIES);
+            if (cache.get(id) == null) {
+                cache.put(id, task(id));
+            }
+        }
+        double nanosPerGet = (System.nanoTime() - start) / (double) OPERATIONS;
+        System.gc();
+        long gcBefore = totalGcMillis();
+        for (int i = 0; i < FULL_COLLECTIONS; i++) {
+            System.gc();
+        }
+        double pauseMillis = (totalGcMillis() - gcBefore) / (double) FULL_COLLECTIONS;
+        log.info("{} entries on heap, {} off heap, {} ns per lookup",
+                cache.size(), cache.offHeapSize(), String.format("%.1f", nanosPerGet));
+        cache.clear();
+        return pauseMillis;
+    }
+
+    private static TaskDtoResponse task(long id) {
+        TaskDtoResponse task = new TaskDtoResponse();
+        task.setId(id);
+        task.setTitle("Задача " + id);
+        task.setContent("Описание задачи номер " + id);
+        task.setIsCompleted(id % 2 == 0);
+        task.setDeadlineDate(LocalDate.of(2025, 1, 1).plusDays(id % 365));
+        task.setIsImportant(id % 3 == 0);
+        task.setUserId(id % 1000);
+        return task;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+}
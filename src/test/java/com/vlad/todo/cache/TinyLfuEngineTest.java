@@ -0,0 +1,135 @@
+package com.vlad.todo.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class TinyLfuEngineTest {
+
+    @Test
+    void put_ShouldKeepTotalWeightWithinBudget() {
+        TinyLfuEngine<Long, String> engine = new TinyLfuEngine<>(1_000, String::length, 1);
+        for (long i = 0; i < 500; i++) {
+            engine.put(i, "x".repeat((int) (i % 40) + 1));
+        }
+
+        assertTrue(engine.weight() <= 1_000);
+        engine.verifyIntegrity();
+    }
+
+    @Test
+    void put_ShouldRejectValueHeavierThanBudget() {
+        TinyLfuEngine<Long, String> engine = new TinyLfuEngine<>(10, String::length, 1);
+        engine.put(1L, "short");
+        engine.put(1L, "far too long");
+
+        assertNull(engine.get(1L));
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void put_ShouldProtectFrequentEntries_FromOneOffScan() {
+        TinyLfuEngine<Long, Long> engine = new TinyLfuEngine<>(100, value -> 1, 1);
+        for (int round = 0; round < 20; round++) {
+            for (long hot = 0; hot < 50; hot++) {
+                if (engine.get(hot) == null) {
+                    engine.put(hot, hot);
+                }
+            }
+        }
+
+        for (long cold = 1_000; cold < 11_000; cold++) {
+            engine.put(cold, cold);
+        }
+
+        int hotSurvivors = 0;
+        for (long hot = 0; hot < 50; hot++) {
+            if (engine.get(hot) != null) {
+                hotSurvivors++;
+            }
+        }
+        assertTrue(hotSurvivors >= 45, "Only " + hotSurvivors + " hot entries survived the scan");
+        engine.verifyIntegrity();
+    }
+
+    @Test
+    void get_ShouldLetFormerlyHotEntriesAgeOut_WhenWorkloadShifts() {
+        TinyLfuEngine<Long, Long> engine = new TinyLfuEngine<>(100, value -> 1, 1);
+        accessRepeatedly(engine, 0, 80, 30);
+
+        accessRepeatedly(engine, 10_000, 10_080, 60);
+
+        int newHot = 0;
+        for (long key = 10_000; key < 10_080; key++) {
+            if (engine.get(key) != null) {
+                newHot++;
+            }
+        }
+        assertTrue(newHot >= 70, "Only " + newHot + " entries of the new hot set are cached");
+    }
+
+    @Test
+    void concurrentAccess_ShouldKeepSegmentsConsistent() throws Exception {
+        TinyLfuEngine<Long, Long> engine = new TinyLfuEngine<>(4_096, value -> value % 7 + 1, 8);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(pool.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int i = 0; i < 100_000; i++) {
+                        long key = random.nextLong(5_000);
+                        if (random.nextInt(10) == 0) {
+                            engine.remove(key);
+                        } else if (engine.get(key) == null) {
+                            engine.put(key, key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(engine.weight() <= 4_096);
+        engine.verifyIntegrity();
+    }
+
+    @Test
+    void hottestKeys_ShouldRankBySketchFrequency() {
+        TinyLfuEngine<Long, Long> engine = new TinyLfuEngine<>(100, value -> 1, 1);
+        for (long key = 0; key < 20; key++) {
+            engine.put(key, key);
+        }
+        for (int i = 0; i < 5; i++) {
+            engine.get(7L);
+            engine.get(3L);
+        }
+        engine.get(3L);
+
+        List<KeyFrequency<Long>> hottest = engine.hottestKeys(2);
+
+        assertEquals(List.of(3L, 7L), hottest.stream().map(KeyFrequency::getKey).toList());
+    }
+
+    private static void accessRepeatedly(TinyLfuEngine<Long, Long> engine,
+                                         long from, long to, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (long key = from; key < to; key++) {
+                if (engine.get(key) == null) {
+                    engine.put(key, key);
+                }
+            }
+        }
+    }
+}
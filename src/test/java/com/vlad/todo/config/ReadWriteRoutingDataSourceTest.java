@@ -0,0 +1,187 @@
+package com.vlad.todo.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class ReadWriteRoutingDataSourceTest {
+    private static final long MAX_LAG_MS = 1000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ReplicaLagGuard lagGuard = new ReplicaLagGuard(MAX_LAG_MS, now::get);
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldUseReplica_AndWritesThePrimary() {
+        Routing routing = new Routing(List.of(replica));
+
+        assertEquals("replica", routing.read());
+        assertEquals("primary", routing.write());
+    }
+
+    @Test
+    void reads_ShouldRoundRobinOverReplicas() {
+        Routing routing = new Routing(List.of(replica, database("replica2")));
+
+        assertEquals(List.of("replica", "replica2", "replica"),
+                List.of(routing.read(), routing.read(), routing.read()));
+    }
+
+    @Test
+    void reads_ShouldStayOnPrimary_RightAfterTheClientsOwnWrite() {
+        Routing routing = new Routing(List.of(replica));
+        inRequestFrom("client-a");
+        routing.write();
+
+        assertEquals("primary", routing.read());
+
+        inRequestFrom("client-b");
+        assertEquals("replica", routing.read());
+
+        inRequestFrom("client-a");
+        now.addAndGet(MAX_LAG_MS);
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void reads_ShouldNotBePinned_ForAnonymousClientsSharingAnAddress() {
+        Routing routing = new Routing(List.of(replica));
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+        routing.write();
+
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void reads_ShouldStayOnPrimary_AfterWriteInTheSameSession() {
+        Routing routing = new Routing(List.of(replica));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(new MockHttpSession());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        routing.write();
+
+        assertEquals("primary", routing.read());
+
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void reads_ShouldStayOnReplica_AfterReadWriteTransactionThatWroteNothing() {
+        Routing routing = new Routing(List.of(replica));
+        inRequestFrom("client-a");
+
+        assertEquals("primary", routing.readInReadWriteTransaction());
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void reads_ShouldUsePrimary_WhenTransactionAsksForIt() {
+        Routing routing = new Routing(List.of(replica));
+
+        assertEquals("primary", routing.readOnly.execute(status -> {
+            ReadWriteRoutingDataSource.usePrimary();
+            return routing.jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+        }));
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void statementInspector_ShouldTreatOnlySelectsAsQueries() {
+        assertTrue(WriteMarkingStatementInspector.isQuery("select t.id from tasks t"));
+        assertTrue(WriteMarkingStatementInspector.isQuery("/* load Task */ SELECT 1"));
+        assertFalse(WriteMarkingStatementInspector.isQuery("insert into task_changes values (1)"));
+        assertFalse(WriteMarkingStatementInspector.isQuery(" update tasks set title = ?"));
+    }
+
+    @Test
+    void reads_ShouldFallBackToPrimary_WhenReplicaIsUnavailable() {
+        Routing routing = new Routing(List.of(
+                new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "sa", "")));
+
+        assertEquals("primary", routing.read());
+    }
+
+    @Test
+    void reads_ShouldUsePrimary_WithoutReplicas() {
+        assertEquals("primary", new Routing(List.of()).read());
+    }
+
+    private void inRequestFrom(String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ReplicaLagGuard.CLIENT_HEADER, client);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+    private class Routing {
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate readOnly;
+        private final TransactionTemplate readWrite;
+
+        Routing(List<DataSource> replicas) {
+            DataSource dataSource = new LazyConnectionDataSourceProxy(
+                    new ReadWriteRoutingDataSource(primary, replicas, lagGuard));
+            DataSourceTransactionManager transactionManager =
+                    new DataSourceTransactionManager(dataSource);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readWrite = new TransactionTemplate(transactionManager);
+        }
+
+        String read() {
+            return readOnly.execute(status ->
+                    jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+        }
+
+        String readInReadWriteTransaction() {
+            return readWrite.execute(status ->
+                    jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+        }
+
+        String write() {
+            return readWrite.execute(status -> {
+                new WriteMarkingStatementInspector().inspect("UPDATE node SET name = name");
+                jdbcTemplate.update("UPDATE node SET name = name");
+                return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+            });
+        }
+    }
+}
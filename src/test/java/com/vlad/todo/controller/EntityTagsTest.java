@@ -0,0 +1,39 @@
+package com.vlad.todo.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.exception.PreconditionFailedException;
+import org.junit.jupiter.api.Test;
+
+class EntityTagsTest {
+
+    @Test
+    void expectedVersion_ShouldReadQuotedVersion_AndIgnoreWildcard() {
+        assertEquals(7L, EntityTags.expectedVersion(EntityTags.of(7)));
+        assertEquals(3L, EntityTags.expectedVersion("\"3.1f\""));
+        assertNull(EntityTags.expectedVersion(null));
+        assertNull(EntityTags.expectedVersion("*"));
+    }
+
+    @Test
+    void expectedVersion_ShouldRejectWeakAndMalformedTags() {
+        assertThrows(PreconditionFailedException.class, () -> EntityTags.expectedVersion("W/\"3\""));
+        assertThrows(PreconditionFailedException.class, () -> EntityTags.expectedVersion("3"));
+        assertThrows(PreconditionFailedException.class, () -> EntityTags.expectedVersion("\"abc\""));
+    }
+
+    @Test
+    void groupTag_ShouldChange_WhenMemberChanges() {
+        GroupDtoResponse group = new GroupDtoResponse(1L, "Group", "Description", 2L);
+        group.getUsers().add(new UserDtoResponse(5L, "Vlad", "Shcherbo", "vlad@gmail.com",
+                "+375291234567", 0L));
+        String before = EntityTags.of(group);
+
+        group.getUsers().get(0).setVersion(1L);
+
+        assertNotEquals(before, EntityTags.of(group));
+        assertEquals(2L, EntityTags.expectedVersion(before));
+    }
+}
@@ -0,0 +1,170 @@
+package com.vlad.todo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.mapper.GroupMapper;
+import com.vlad.todo.mapper.TaskMapper;
+import com.vlad.todo.mapper.UserMapper;
+import com.vlad.todo.model.Group;
+import com.vlad.todo.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database=h2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class GroupRepositoryTest {
+    private static final int GROUPS = 5;
+    private static final int MEMBERS_PER_GROUP = 3;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final GroupMapper groupMapper = new GroupMapper(new UserMapper(new TaskMapper()));
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int g = 0; g < GROUPS; g++) {
+            Group group = new Group();
+            group.setName("group" + g);
+            group.setDescription("description");
+            for (int u = 0; u < MEMBERS_PER_GROUP; u++) {
+                User user = new User();
+                user.setFirstName("first");
+                user.setLastName("last");
+                user.setEmail("user" + g + "_" + u + "@mail.com");
+                user.setPhone("+3752900" + g + u);
+                entityManager.persist(user);
+                group.addUser(user);
+            }
+            entityManager.persist(group);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAll_ShouldLoadGroupsWithMembers_InSingleQuery() {
+        List<GroupDtoResponse> groups = groupRepository.findAll().stream()
+                .map(groupMapper::toDto)
+                .toList();
+
+        assertEquals(GROUPS, groups.size());
+        groups.forEach(group -> assertEquals(MEMBERS_PER_GROUP, group.getUsers().size()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findById_And_findByName_ShouldFetchMembersWithGroup() {
+        Group byName = groupRepository.findByName("group1").orElseThrow();
+        assertEquals(MEMBERS_PER_GROUP, groupMapper.toCached(byName).getMemberIds().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        entityManager.clear();
+        Group byId = groupRepository.findById(byName.getId().longValue()).orElseThrow();
+        assertEquals(MEMBERS_PER_GROUP, groupMapper.toDto(byId).getUsers().size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void projections_ShouldLoadPageWithMembers_InTwoQueries() {
+        List<GroupDtoResponse> groups = groupRepository.findDtoPageAfter(0L, PageRequest.ofSize(GROUPS));
+        groupMapper.attachMembers(groups, groupRepository.findMemberRows(
+                groups.stream().map(GroupDtoResponse::getId).toList()));
+
+        assertEquals(GROUPS, groups.size());
+        groups.forEach(group -> assertEquals(MEMBERS_PER_GROUP, group.getUsers().size()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void addMembers_ShouldInsertOnlyNewExistingUsers_InSingleStatement() {
+        Group first = groupRepository.findByName("group0").orElseThrow();
+        Group second = groupRepository.findByName("group1").orElseThrow();
+        List<Long> memberIds = groupMapper.toCached(second).getMemberIds().stream().toList();
+        long alreadyMember = groupMapper.toCached(first).getMemberIds().iterator().next();
+        entityManager.clear();
+        statistics.clear();
+
+        List<Long> requested = new ArrayList<>(memberIds);
+        requested.add(alreadyMember);
+        requested.add(Long.MAX_VALUE);
+        int added = groupRepository.addMembers(first.getId(), requested);
+
+        assertEquals(memberIds.size(), added);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(MEMBERS_PER_GROUP + memberIds.size(),
+                groupRepository.findMemberRows(List.of(first.getId())).size());
+    }
+
+    @Test
+    void removeMembers_And_removeMemberFromAllGroups_ShouldDeleteOnlyMatchingRows() {
+        Group group = groupRepository.findByName("group2").orElseThrow();
+        long userId = groupMapper.toCached(group).getMemberIds().iterator().next();
+        groupRepository.addMembers(groupRepository.findByName("group3").orElseThrow().getId(),
+                List.of(userId));
+        entityManager.clear();
+        statistics.clear();
+
+        assertEquals(1, groupRepository.removeMembers(group.getId(), List.of(userId)));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, groupRepository.findGroupIdsByMember(userId).size());
+        assertEquals(1, groupRepository.removeMemberFromAllGroups(userId));
+        assertTrue(groupRepository.findGroupIdsByMember(userId).isEmpty());
+    }
+
+    @Test
+    void updatePartially_And_removeById_ShouldNotLoadTheGroup() {
+        Group group = groupRepository.findByName("group4").orElseThrow();
+        long id = group.getId();
+        entityManager.clear();
+        statistics.clear();
+
+        assertEquals(1, groupRepository.updatePartially(id, null, "changed", null));
+        assertEquals(0, groupRepository.updatePartially(Long.MAX_VALUE, "name", null, null));
+        assertEquals(1, groupRepository.removeById(id, null));
+        assertEquals(0, groupRepository.removeById(id, null));
+        assertEquals(6, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(groupRepository.findByName("group4").isEmpty());
+        assertTrue(groupRepository.findMemberRows(List.of(id)).isEmpty());
+    }
+
+    @Test
+    void conditionalWrites_ShouldBumpVersion_AndSkipStaleVersions() {
+        long id = groupRepository.findByName("group3").orElseThrow().getId();
+        entityManager.clear();
+
+        assertEquals(0L, groupRepository.findVersionById(id).orElseThrow());
+        assertEquals(1, groupRepository.updatePartially(id, "renamed", null, 0L));
+        assertEquals(0, groupRepository.updatePartially(id, "stale", null, 0L));
+        assertEquals(1L, groupRepository.findVersionById(id).orElseThrow());
+        assertEquals(0, groupRepository.removeById(id, 0L));
+        assertEquals(MEMBERS_PER_GROUP, groupRepository.findMemberRows(List.of(id)).size());
+        assertEquals(1, groupRepository.removeById(id, 1L));
+        assertTrue(groupRepository.findVersionById(id).isEmpty());
+    }
+}
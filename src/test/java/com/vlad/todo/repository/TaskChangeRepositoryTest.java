@@ -0,0 +1,126 @@
+package com.vlad.todo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.vlad.todo.model.Task;
+import com.vlad.todo.model.TaskChange;
+import com.vlad.todo.model.User;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database=h2",
+        "spring.jpa.show-sql=false"})
+class TaskChangeRepositoryTest {
+    private static final Instant T1 = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant T2 = T1.plusSeconds(60);
+
+    @Autowired
+    private TaskChangeRepository taskChangeRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+    private Task first;
+    private Task second;
+
+    @BeforeEach
+    void setUp() {
+        alice = user("alice");
+        bob = user("bob");
+        first = task(alice);
+        second = task(alice);
+        entityManager.flush();
+    }
+
+    @Test
+    void recordChanges_ShouldLogTasksUnderTheirOwners_InSequenceOrder() {
+        taskChangeRepository.recordChanges(List.of(first.getId(), second.getId()), false, T1);
+        taskChangeRepository.recordChanges(List.of(first.getId()), true, T2);
+
+        List<TaskChange> all = taskChangeRepository.findPageAfter(0, PageRequest.ofSize(10));
+        assertEquals(3, all.size());
+        assertTrue(all.get(0).getId() < all.get(1).getId());
+        assertTrue(all.get(1).getId() < all.get(2).getId());
+        assertTrue(all.stream().allMatch(change -> change.getUserId().equals(alice.getId())));
+        assertEquals(first.getId(), all.get(2).getTaskId());
+        assertTrue(all.get(2).isDeleted());
+
+        List<TaskChange> afterFirst = taskChangeRepository.findPageAfter(all.get(0).getId(),
+                alice.getId(), PageRequest.ofSize(10));
+        assertEquals(all.subList(1, 3).stream().map(TaskChange::getId).toList(),
+                afterFirst.stream().map(TaskChange::getId).toList());
+        assertTrue(taskChangeRepository.findPageAfter(0, bob.getId(), PageRequest.ofSize(10))
+                .isEmpty());
+        assertEquals(all.get(1).getId(), taskChangeRepository.findLastIdUpTo(T1));
+    }
+
+    @Test
+    void recordMoveAway_ShouldLogTombstone_OnlyWhenTheOwnerChanges() {
+        assertEquals(0, taskChangeRepository.recordMoveAway(first.getId(), alice.getId(), T1));
+        assertEquals(1, taskChangeRepository.recordMoveAway(first.getId(), bob.getId(), T1));
+
+        TaskChange tombstone = taskChangeRepository.findAll().get(0);
+        assertEquals(alice.getId(), tombstone.getUserId());
+        assertTrue(tombstone.isDeleted());
+    }
+
+    @Test
+    void recordUserTombstones_ShouldLogEveryTaskOfTheUser() {
+        task(bob);
+
+        assertEquals(2, taskChangeRepository.recordUserTombstones(alice.getId(), T1));
+
+        List<TaskChange> all = taskChangeRepository.findAll();
+        assertEquals(List.of(first.getId(), second.getId()),
+                all.stream().map(TaskChange::getTaskId).sorted().toList());
+        assertTrue(all.stream().allMatch(change -> change.isDeleted()
+                && change.getUserId().equals(alice.getId())));
+    }
+
+    @Test
+    void compaction_ShouldKeepTheLatestEntryPerTaskAndUser_AndDropExpiredOnes() {
+        taskChangeRepository.recordChanges(List.of(first.getId(), second.getId()), false, T1);
+        taskChangeRepository.recordChanges(List.of(first.getId()), false, T2);
+        taskChangeRepository.recordMoveAway(first.getId(), bob.getId(), T2);
+
+        assertEquals(2, taskChangeRepository.deleteSuperseded());
+        List<TaskChange> left = taskChangeRepository.findAll();
+        assertEquals(2, left.size());
+        assertTrue(left.stream().anyMatch(change -> change.getTaskId().equals(first.getId())
+                && change.isDeleted()));
+
+        assertEquals(1, taskChangeRepository.deleteOlderThan(T2));
+        assertEquals(first.getId(), taskChangeRepository.findAll().get(0).getTaskId());
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setLastName("last");
+        user.setEmail(name + "@mail.com");
+        user.setPhone("+375290" + Math.abs(name.hashCode() % 1_000_000));
+        return entityManager.persist(user);
+    }
+
+    private Task task(User owner) {
+        Task task = new Task();
+        task.setTitle("title");
+        task.setIsCompleted(false);
+        task.setIsImportant(false);
+        task.setDeadlineDate(LocalDate.now().plusDays(1));
+        task.setUser(owner);
+        return entityManager.persist(task);
+    }
+}
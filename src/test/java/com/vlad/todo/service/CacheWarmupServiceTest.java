@@ -0,0 +1,116 @@
+package com.vlad.todo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.vlad.todo.cache.GroupCache;
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserCache;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.mapper.GroupMapper;
+import com.vlad.todo.mapper.TaskMapper;
+import com.vlad.todo.mapper.UserMapper;
+import com.vlad.todo.model.User;
+import com.vlad.todo.repository.GroupRepository;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class CacheWarmupServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private GroupRepository groupRepository;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private TaskMapper taskMapper;
+
+    @Mock
+    private GroupMapper groupMapper;
+
+    @TempDir
+    Path snapshotDir;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(taskRepository.findAllById(any())).thenReturn(List.of());
+        when(groupRepository.findAllById(any())).thenReturn(List.of());
+    }
+
+    @Test
+    void warmUp_ShouldPreloadSnapshottedUsers_InBatches() {
+        UserCache before = userCache();
+        for (long id = 1; id <= 5; id++) {
+            before.put(id, user(id));
+            before.get(id);
+        }
+        service(before, 2).snapshot();
+
+        List<User> users = List.of(entity(1), entity(2), entity(3), entity(4));
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> users.stream()
+                .filter(user -> invocation.<List<Long>>getArgument(0).contains(user.getId()))
+                .toList());
+        when(userMapper.toDto(any(User.class)))
+                .thenAnswer(invocation -> user(invocation.<User>getArgument(0).getId()));
+        UserCache after = userCache();
+
+        service(after, 2).warmUp();
+
+        verify(userRepository, times(3)).findAllById(any());
+        assertEquals(4, after.size());
+        assertNull(after.get(5L));
+        assertEquals(user(3), after.get(3L));
+    }
+
+    @Test
+    void warmUp_ShouldStartCold_WhenNoSnapshotExists() {
+        UserCache cache = userCache();
+
+        service(cache, 2).warmUp();
+
+        assertEquals(0, cache.size());
+        verify(userRepository, never()).findAllById(any());
+    }
+
+    private CacheWarmupService service(UserCache userCache, int batchSize) {
+        return new CacheWarmupService(userCache,
+                new TaskCache(1 << 20, 0, 0, null, 0, 0, 0),
+                new GroupCache(1 << 20, 0, 100, 0, 0),
+                userRepository, taskRepository, groupRepository,
+                userMapper, taskMapper, groupMapper,
+                snapshotDir.toString(), 100, batchSize);
+    }
+
+    private static UserCache userCache() {
+        return new UserCache(1 << 20, 0, 0, null, 0, 0, 0);
+    }
+
+    private static User entity(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static UserDtoResponse user(long id) {
+        UserDtoResponse user = new UserDtoResponse();
+        user.setId(id);
+        user.setFirstName("User " + id);
+        return user;
+    }
+}
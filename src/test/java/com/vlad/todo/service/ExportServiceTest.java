@@ -0,0 +1,94 @@
+package com.vlad.todo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class ExportServiceTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private ExportService exportService;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        exportService = new ExportService(taskRepository, userRepository,
+                Jackson2ObjectMapperBuilder.json()
+                        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build());
+    }
+
+    @Test
+    void exportTasks_ShouldWriteOneJsonObjectPerLine_AndCloseTheCursor() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(taskRepository.streamAllDtos()).thenReturn(Stream.of(
+                new TaskDtoResponse(1L, "Task", "Content", false, LocalDate.of(2025, 1, 2), true, 7L, 0L),
+                new TaskDtoResponse(2L, "Second", null, true, null, false, 7L, 0L))
+                .onClose(() -> closed.set(true)));
+
+        long count = exportService.exportTasks(DataFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,\"title\":\"Task\""));
+        assertTrue(lines[0].contains("\"deadlineDate\":\"2025-01-02\""));
+        assertTrue(lines[1].startsWith("{\"id\":2,"));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportUsers_ShouldWriteCsvWithHeader_AndQuoteSpecialCharacters() throws IOException {
+        when(userRepository.streamAllDtos()).thenReturn(Stream.of(
+                new UserDtoResponse(1L, "Vlad", "Shcherbo, Jr", "vlad@gmail.com", "+375291234567", 0L),
+                new UserDtoResponse(2L, "Anna \"Ann\"", "Line\nBreak", "anna@gmail.com", null, 0L)));
+
+        long count = exportService.exportUsers(DataFormat.CSV, out);
+
+        assertEquals(2, count);
+        assertEquals("id,firstName,lastName,email,phone\r\n"
+                        + "1,Vlad,\"Shcherbo, Jr\",vlad@gmail.com,+375291234567\r\n"
+                        + "2,\"Anna \"\"Ann\"\"\",\"Line\nBreak\",anna@gmail.com,\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportTasks_ShouldConsumeRowsLazily() throws IOException {
+        int rows = ExportService.FLUSH_EVERY * 3 + 1;
+        when(taskRepository.streamAllDtos()).thenReturn(LongStream.rangeClosed(1, rows)
+                .mapToObj(id -> new TaskDtoResponse(id, "Task", null, false, null, false, 1L, 0L)));
+
+        assertEquals(rows, exportService.exportTasks(DataFormat.CSV, out));
+        assertEquals(rows + 1, out.toString(StandardCharsets.UTF_8).split("\r\n").length);
+    }
+
+    @Test
+    void dataFormat_ShouldRejectUnknownFormat() {
+        assertEquals(DataFormat.CSV, DataFormat.from("CSV"));
+        assertThrows(InvalidInputException.class, () -> DataFormat.from("xml"));
+    }
+}
@@ -2,24 +2,34 @@ package com.vlad.todo.service;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.vlad.todo.cache.CachedGroup;
+import com.vlad.todo.cache.GroupCache;
 import com.vlad.todo.dto.GroupDtoRequest;
 import com.vlad.todo.dto.GroupDtoResponse;
+import com.vlad.todo.dto.MembershipChangeResponse;
+import com.vlad.todo.dto.PageResponse;
+import com.vlad.todo.dto.UserDtoResponse;
+import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.GroupMapper;
 import com.vlad.todo.model.Group;
-import com.vlad.todo.model.User;
+import com.vlad.todo.repository.GroupMemberRow;
 import com.vlad.todo.repository.GroupRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import java.util.Arrays;
+import org.mockito.Spy;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 class GroupServiceTest {
 
@@ -32,6 +42,15 @@ class GroupServiceTest {
     @Mock
     private GroupRepository groupRepository;
 
+    @Mock
+    private GroupCache groupCache;
+
+    @Mock
+    private UserService userService;
+
+    @Spy
+    private PageCursorCodec pageCursorCodec = new PageCursorCodec(2, 10);
+
     private Group existingGroup;
     private GroupDtoRequest groupDtoRequest;
     private GroupDtoResponse groupDtoResponse;
@@ -39,6 +58,8 @@ class GroupServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(groupCache.get(anyLong(), any())).thenAnswer(invocation -> invocation
+                .<Function<Long, CachedGroup>>getArgument(1).apply(invocation.getArgument(0)));
         existingGroup = new Group();
         existingGroup.setId(1L);
         existingGroup.setName("Test Group");
@@ -56,18 +77,47 @@ class GroupServiceTest {
 
     @Test
     void findAll_ShouldReturnListOfGroups() {
-        when(groupRepository.findAll()).thenReturn(Arrays.asList(existingGroup));
-        when(groupMapper.toDto(existingGroup)).thenReturn(groupDtoResponse);
+        List<GroupMemberRow> memberRows = List.of(
+                new GroupMemberRow(1L, 2L, "Vlad", "Shcherbo", "vlad@gmail.com", "+1234567890", 0L));
+        when(groupRepository.findAllDtos()).thenReturn(List.of(groupDtoResponse));
+        when(groupRepository.findAllMemberRows()).thenReturn(memberRows);
 
         List<GroupDtoResponse> groups = groupService.findAll();
         assertEquals(1, groups.size());
         assertEquals(groupDtoResponse, groups.get(0));
+        verify(groupMapper).attachMembers(groups, memberRows);
+        verify(groupRepository, never()).findAll();
+    }
+
+    @Test
+    void findPage_ShouldReturnLastPageWithoutCursor() {
+        groupDtoResponse.setId(1L);
+        when(groupRepository.findDtoPageAfter(eq(0L), any())).thenReturn(List.of(groupDtoResponse));
+        when(groupRepository.findMemberRows(List.of(1L))).thenReturn(List.of());
+
+        PageResponse<GroupDtoResponse> page = groupService.findPage("", 5);
+
+        assertEquals(List.of(groupDtoResponse), page.getItems());
+        assertNull(page.getNextCursor());
+        verify(groupRepository).findDtoPageAfter(0L, pageCursorCodec.lookahead(5));
+        verify(groupMapper).attachMembers(page.getItems(), List.of());
+    }
+
+    @Test
+    void findPage_ShouldRejectMalformedCursorAndOversizedPage() {
+        assertThrows(InvalidInputException.class, () -> groupService.findPage("not a cursor", 2));
+        assertThrows(InvalidInputException.class, () -> groupService.findPage(null, 11));
+        assertThrows(InvalidInputException.class, () -> groupService.findPage(null, 0));
+        verifyNoInteractions(groupRepository);
     }
 
     @Test
     void findById_ShouldReturnGroup_WhenGroupExists() {
+        CachedGroup cachedGroup = new CachedGroup(1L, "Test Group", "Description", 0L, Set.of());
         when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
-        when(groupMapper.toDto(existingGroup)).thenReturn(groupDtoResponse);
+        when(groupMapper.toCached(existingGroup)).thenReturn(cachedGroup);
+        when(userService.findAllByIds(List.of())).thenReturn(List.of());
+        when(groupMapper.toDto(cachedGroup, List.of())).thenReturn(groupDtoResponse);
 
         GroupDtoResponse result = groupService.findById(1L);
         assertEquals(groupDtoResponse, result);
@@ -93,106 +143,186 @@ class GroupServiceTest {
 
     @Test
     void update_ShouldUpdateAndReturnGroup_WhenGroupExists() {
+        CachedGroup cachedGroup = new CachedGroup(1L, "Updated Group", "Updated Description", 0L, Set.of());
+        when(groupRepository.updatePartially(1L, "Updated Group", "Updated Description", null)).thenReturn(1);
         when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
-        when(groupMapper.toDto(existingGroup)).thenReturn(groupDtoResponse);
+        when(groupMapper.toCached(existingGroup)).thenReturn(cachedGroup);
+        when(userService.findAllByIds(List.of())).thenReturn(List.of());
+        when(groupMapper.toDto(cachedGroup, List.of())).thenReturn(groupDtoResponse);
 
-        var updatedGroup = groupService.update(1L, groupDtoRequest);
+        var updatedGroup = groupService.update(1L, groupDtoRequest, null);
 
         assertEquals(groupDtoResponse, updatedGroup);
-        verify(groupRepository).save(existingGroup);
+        verify(groupRepository, never()).save(any());
     }
 
     @Test
     void update_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(groupRepository.updatePartially(anyLong(), any(), any(), any())).thenReturn(0);
 
-        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.update(1L, groupDtoRequest));
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.update(1L, groupDtoRequest, null));
         assertEquals("Группа с id 1 не найдена", exception.getMessage());
+        verify(groupRepository, never()).findById(anyLong());
     }
 
     @Test
-    void update_ShouldUpdateNameAndDescription_WhenProvided() {
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+    void update_ShouldPassNullForFieldsNotProvided() {
+        groupDtoRequest.setName(null);
+        groupDtoRequest.setDescription("New Description");
+        stubUpdatedGroup();
+
+        groupService.update(1L, groupDtoRequest, null);
+
+        verify(groupRepository).updatePartially(1L, null, "New Description", null);
+    }
+
+    @Test
+    void findByName_ShouldReturnGroup_WhenGroupExists() {
+        when(groupRepository.findByName(any())).thenReturn(Optional.of(existingGroup));
         when(groupMapper.toDto(existingGroup)).thenReturn(groupDtoResponse);
 
-        groupService.update(1L, groupDtoRequest);
+        GroupDtoResponse result = groupService.findByName("Test Group");
+        assertEquals(groupDtoResponse, result);
+    }
 
-        assertEquals("Updated Group", existingGroup.getName());
-        assertEquals("Updated Description", existingGroup.getDescription());
+    @Test
+    void findByName_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
+        when(groupRepository.findByName(any())).thenReturn(Optional.empty());
+
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.findByName("Nonexistent Group"));
+        assertEquals("Группа с названием Nonexistent Group не найдена", exception.getMessage());
     }
 
     @Test
-    void update_ShouldNotChangeName_WhenNotProvided() {
-        groupDtoRequest.setName(null);
-        groupDtoRequest.setDescription("New Description");
+    void deleteById_ShouldDeleteGroup_WhenGroupExists() {
+        when(groupRepository.removeById(1L, null)).thenReturn(1);
 
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+        groupService.deleteById(1L, null);
 
-        groupService.update(1L, groupDtoRequest);
+        verify(groupRepository).removeById(1L, null);
+        verify(groupRepository, never()).findById(anyLong());
+    }
 
-        assertEquals("New Description", existingGroup.getDescription());
-        assertEquals("Test Group", existingGroup.getName());
+    @Test
+    void deleteById_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
+        when(groupRepository.removeById(1L, null)).thenReturn(0);
+
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.deleteById(1L, null));
+        assertEquals("Группа с id 1 не найдена", exception.getMessage());
     }
 
     @Test
-    void update_ShouldNotChangeDescription_WhenNotProvided() {
-        groupDtoRequest.setDescription(null);
-        groupDtoRequest.setName("New Name");
+    void deleteById_ShouldThrowPreconditionFailed_WhenVersionChanged() {
+        when(groupRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+
+        PreconditionFailedException exception = assertThrows(PreconditionFailedException.class,
+                () -> groupService.deleteById(1L, 1L));
+
+        assertEquals("Группа с id 1 была изменена, текущая версия 2", exception.getMessage());
+        verify(groupCache, never()).remove(anyLong());
+    }
+
+    @Test
+    void findById_ShouldResolveMembersThroughUserService_WhenGroupIsCached() {
+        CachedGroup cachedGroup = new CachedGroup(1L, "Test Group", "Description", 0L, Set.of(3L, 2L));
+        List<UserDtoResponse> members = List.of(new UserDtoResponse(), new UserDtoResponse());
+        doReturn(cachedGroup).when(groupCache).get(eq(1L), any());
+        when(userService.findAllByIds(List.of(2L, 3L))).thenReturn(members);
+        when(groupMapper.toDto(cachedGroup, members)).thenReturn(groupDtoResponse);
+
+        GroupDtoResponse result = groupService.findById(1L);
 
+        assertEquals(groupDtoResponse, result);
+        verify(groupRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void findById_ShouldLoadGroupThroughCache_WhenMissing() {
+        CachedGroup cachedGroup = new CachedGroup(1L, "Test Group", "Description", 0L, Set.of());
         when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+        when(groupMapper.toCached(existingGroup)).thenReturn(cachedGroup);
 
-        groupService.update(1L, groupDtoRequest);
+        groupService.findById(1L);
 
-        assertEquals("New Name", existingGroup.getName());
-        assertEquals("Description of Test Group", existingGroup.getDescription());
+        verify(groupCache).get(eq(1L), any());
+        verify(groupRepository).findById(anyLong());
     }
 
     @Test
-    void findByName_ShouldReturnGroup_WhenGroupExists() {
-        when(groupRepository.findByName(any())).thenReturn(Optional.of(existingGroup));
-        when(groupMapper.toDto(existingGroup)).thenReturn(groupDtoResponse);
+    void findByName_ShouldUseCachedGroup() {
+        CachedGroup cachedGroup = new CachedGroup(1L, "Test Group", "Description", 0L, Set.of());
+        when(groupCache.getByName("Test Group")).thenReturn(cachedGroup);
+        when(userService.findAllByIds(List.of())).thenReturn(List.of());
+        when(groupMapper.toDto(cachedGroup, List.of())).thenReturn(groupDtoResponse);
 
         GroupDtoResponse result = groupService.findByName("Test Group");
+
         assertEquals(groupDtoResponse, result);
+        verify(groupRepository, never()).findByName(any());
     }
 
     @Test
-    void findByName_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
-        when(groupRepository.findByName(any())).thenReturn(Optional.empty());
+    void update_ShouldInvalidateCachedGroup() {
+        stubUpdatedGroup();
 
-        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.findByName("Nonexistent Group"));
-        assertEquals("Группа с названием Nonexistent Group не найдена", exception.getMessage());
+        groupService.update(1L, groupDtoRequest, null);
+
+        verify(groupCache).remove(1L);
     }
 
     @Test
-    void deleteById_ShouldDeleteGroup_WhenGroupExists() {
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+    void deleteById_ShouldInvalidateCachedGroup() {
+        when(groupRepository.removeById(1L, null)).thenReturn(1);
 
-        groupService.deleteById(1L);
+        groupService.deleteById(1L, null);
 
-        verify(groupRepository).deleteById(1L);
+        verify(groupCache).remove(1L);
     }
 
     @Test
-    void deleteById_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.empty());
+    void addMembers_ShouldInsertDistinctIdsInOneStatement_AndInvalidateCachedGroup() {
+        when(groupRepository.existsById(1L)).thenReturn(true);
+        when(groupRepository.addMembers(1L, Set.of(2L, 3L))).thenReturn(1);
 
-        NotFoundException exception = assertThrows(NotFoundException.class, () -> groupService.deleteById(1L));
-        assertEquals("Группа с id 1 не найдена", exception.getMessage());
+        MembershipChangeResponse result = groupService.addMembers(1L, List.of(2L, 3L, 2L));
+
+        assertEquals(new MembershipChangeResponse(1L, 2, 1), result);
+        verify(groupRepository, times(1)).addMembers(anyLong(), any());
+        verify(groupCache).remove(1L);
     }
 
     @Test
-    void deleteById_ShouldRemoveGroupFromUsers_WhenGroupIsDeleted() {
-        User user = new User();
-        user.setId(1L);
-        user.getGroups().add(existingGroup);
-        existingGroup.getUsers().add(user);
+    void removeMembers_ShouldDeleteRowsInOneStatement() {
+        when(groupRepository.existsById(1L)).thenReturn(true);
+        when(groupRepository.removeMembers(1L, Set.of(2L))).thenReturn(1);
 
-        when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+        MembershipChangeResponse result = groupService.removeMembers(1L, List.of(2L));
 
-        groupService.deleteById(1L);
+        assertEquals(new MembershipChangeResponse(1L, 1, 1), result);
+        verify(groupRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void addMembers_ShouldThrowNotFoundException_WhenGroupDoesNotExist() {
+        when(groupRepository.existsById(1L)).thenReturn(false);
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> groupService.addMembers(1L, List.of(2L)));
+        assertEquals("Группа с id 1 не найдена", exception.getMessage());
+        verify(groupRepository, never()).addMembers(anyLong(), any());
+    }
 
-        verify(groupRepository).deleteById(1L);
-        assertFalse(user.getGroups().contains(existingGroup), "Группа должна быть удалена из пользователя");
+    @Test
+    void addMembers_ShouldRejectInvalidIds() {
+        assertThrows(InvalidInputException.class, () -> groupService.addMembers(1L, List.of()));
+        assertThrows(InvalidInputException.class, () -> groupService.addMembers(1L, List.of(0L)));
+        verify(groupRepository, never()).addMembers(anyLong(), any());
+    }
+
+    private void stubUpdatedGroup() {
+        when(groupRepository.updatePartially(anyLong(), any(), any(), any())).thenReturn(1);
+        when(groupRepository.findById(anyLong())).thenReturn(Optional.of(existingGroup));
+        when(groupMapper.toCached(existingGroup))
+                .thenReturn(new CachedGroup(1L, "Test Group", "Description", 0L, Set.of()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package com.vlad.todo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.vlad.todo.dto.TaskChangesResponse;
+import com.vlad.todo.dto.TaskDtoRequest;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.UserDtoRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + TaskChangeReplicaTest.PRIMARY_URL,
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database=h2",
+        "spring.jpa.show-sql=false",
+        "datasource.replica.urls=" + TaskChangeReplicaTest.REPLICA_URL,
+        "datasource.replica.max-lag-ms=0",
+        "sync.changes.settle-ms=0"})
+class TaskChangeReplicaTest {
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:sync_replica;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+    static final String PRIMARY_URL =
+            "jdbc:h2:mem:sync_primary;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskChangeService taskChangeService;
+
+    @Test
+    void findChanges_ShouldNotSkipEntries_WhenReplicaLags() throws Exception {
+        long userId = userService.save(user()).getId();
+        freezeReplica();
+        String token = taskChangeService.findChanges(null, userId, null).getNextToken();
+        Thread.sleep(5);
+
+        TaskDtoResponse created = taskService.saveTask(task(userId));
+        Thread.sleep(5);
+        TaskChangesResponse changes = taskChangeService.findChanges(token, userId, null);
+
+        assertEquals(1, changes.getChanged().size());
+        assertEquals(created.getId(), changes.getChanged().get(0).getId());
+    }
+
+    // the replica gets one copy of the primary and nothing after it
+    private static void freezeReplica() throws SQLException, IOException {
+        Path script = Files.createTempFile("replica", ".sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Statement statement = primary.createStatement()) {
+            statement.execute("SCRIPT TO '" + script + "'");
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    private static UserDtoRequest user() {
+        UserDtoRequest user = new UserDtoRequest();
+        user.setFirstName("Ivan");
+        user.setLastName("Ivanov");
+        user.setEmail("replica@mail.com");
+        user.setPhone("+375291234567");
+        return user;
+    }
+
+    private static TaskDtoRequest task(long userId) {
+        TaskDtoRequest task = new TaskDtoRequest();
+        task.setTitle("Task");
+        task.setIsCompleted(false);
+        task.setIsImportant(false);
+        task.setDeadlineDate(LocalDate.now().plusDays(1));
+        task.setUserId(userId);
+        return task;
+    }
+}
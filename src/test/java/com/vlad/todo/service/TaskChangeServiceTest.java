@@ -0,0 +1,150 @@
+package com.vlad.todo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.vlad.todo.dto.TaskChangesResponse;
+import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.exception.SyncTokenExpiredException;
+import com.vlad.todo.model.TaskChange;
+import com.vlad.todo.repository.TaskChangeRepository;
+import com.vlad.todo.repository.TaskRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class TaskChangeServiceTest {
+    private static final long SETTLE_MS = 5_000;
+    private static final long RETENTION_MS = 100_000;
+
+    @Mock
+    private TaskChangeRepository taskChangeRepository;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private TaskChangeService taskChangeService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        taskChangeService = new TaskChangeService(taskChangeRepository, taskRepository,
+                new PageCursorCodec(2, 10), SETTLE_MS, RETENTION_MS, now::get);
+    }
+
+    @Test
+    void findChanges_ShouldOnlyIssueToken_WithoutSince() {
+        when(taskChangeRepository.findLastIdUpTo(Instant.ofEpochMilli(995_000))).thenReturn(7L);
+
+        TaskChangesResponse response = taskChangeService.findChanges(null, null, null);
+
+        assertTrue(response.getChanged().isEmpty());
+        assertTrue(response.getDeleted().isEmpty());
+        assertFalse(response.isHasMore());
+        taskChangeService.findChanges(response.getNextToken(), null, null);
+        verify(taskChangeRepository).findPageAfter(eq(7L), any());
+        verify(taskRepository, never()).findDtosByIds(any());
+    }
+
+    @Test
+    void findChanges_ShouldReturnLatestStatePerTask_AndTombstonesForDeletedOrMovedTasks() {
+        String token = bootstrapToken();
+        when(taskChangeRepository.findPageAfter(eq(0L), eq(1L), any())).thenReturn(List.of(
+                change(1, 10, false), change(2, 20, false), change(3, 10, true),
+                change(4, 30, false)));
+        when(taskRepository.findDtosByIds(List.of(20L, 30L)))
+                .thenReturn(List.of(task(20, 1), task(30, 2)));
+
+        TaskChangesResponse response = taskChangeService.findChanges(token, 1L, 10);
+
+        assertEquals(List.of(20L), response.getChanged().stream()
+                .map(TaskDtoResponse::getId).toList());
+        assertEquals(List.of(10L, 30L), response.getDeleted());
+        assertFalse(response.isHasMore());
+        taskChangeService.findChanges(response.getNextToken(), 1L, null);
+        verify(taskChangeRepository).findPageAfter(eq(4L), eq(1L), any());
+    }
+
+    @Test
+    void findChanges_ShouldStopAtFullPage_AndHoldBackUnsettledChanges() {
+        String token = bootstrapToken();
+        when(taskChangeRepository.findPageAfter(eq(0L), any())).thenReturn(List.of(
+                change(1, 10, true), change(2, 20, true), change(3, 30, true)));
+
+        TaskChangesResponse full = taskChangeService.findChanges(token, null, 2);
+
+        assertEquals(List.of(10L, 20L), full.getDeleted());
+        assertTrue(full.isHasMore());
+
+        when(taskChangeRepository.findPageAfter(eq(2L), any())).thenReturn(List.of(
+                change(3, 30, true, now.get() - SETTLE_MS + 1)));
+
+        TaskChangesResponse unsettled = taskChangeService.findChanges(full.getNextToken(), null, 2);
+
+        assertTrue(unsettled.getDeleted().isEmpty());
+        assertFalse(unsettled.isHasMore());
+        taskChangeService.findChanges(unsettled.getNextToken(), null, 2);
+        verify(taskChangeRepository, times(2)).findPageAfter(eq(2L), any());
+    }
+
+    @Test
+    void findChanges_ShouldRejectExpiredAndMalformedTokens() {
+        String token = bootstrapToken();
+        now.addAndGet(RETENTION_MS);
+
+        assertThrows(SyncTokenExpiredException.class,
+                () -> taskChangeService.findChanges(token, null, null));
+        assertThrows(InvalidInputException.class,
+                () -> taskChangeService.findChanges("not a token", null, null));
+        String pageCursor = new PageCursorCodec(2, 10).encode(1);
+        assertThrows(InvalidInputException.class,
+                () -> taskChangeService.findChanges(pageCursor, null, null));
+        verify(taskChangeRepository, never()).findPageAfter(anyLong(), any());
+    }
+
+    @Test
+    void compact_ShouldDropSupersededAndExpiredEntries() {
+        taskChangeService.compact();
+
+        verify(taskChangeRepository).deleteSuperseded();
+        verify(taskChangeRepository).deleteOlderThan(Instant.ofEpochMilli(900_000));
+    }
+
+    @Test
+    void recording_ShouldSkipEmptyBatches() {
+        taskChangeService.recordSaved(List.of());
+        taskChangeService.recordTombstones(List.of(5L));
+
+        verify(taskChangeRepository).recordChanges(List.of(5L), true,
+                Instant.ofEpochMilli(now.get()));
+        verifyNoMoreInteractions(taskChangeRepository);
+    }
+
+    private String bootstrapToken() {
+        return taskChangeService.findChanges(null, null, null).getNextToken();
+    }
+
+    private TaskChange change(long id, long taskId, boolean deleted) {
+        return change(id, taskId, deleted, now.get() - SETTLE_MS - 1_000);
+    }
+
+    private static TaskChange change(long id, long taskId, boolean deleted, long changedAt) {
+        return new TaskChange(id, taskId, 1L, deleted, Instant.ofEpochMilli(changedAt));
+    }
+
+    private static TaskDtoResponse task(long id, long userId) {
+        TaskDtoResponse task = new TaskDtoResponse();
+        task.setId(id);
+        task.setUserId(userId);
+        return task;
+    }
+}
@@ -0,0 +1,247 @@
+package com.vlad.todo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.ImportReport;
+import com.vlad.todo.exception.InvalidInputException;
+import com.vlad.todo.mapper.TaskMapper;
+import com.vlad.todo.model.Task;
+import com.vlad.todo.model.User;
+import com.vlad.todo.repository.TaskRepository;
+import com.vlad.todo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class TaskImportServiceTest {
+    private static final String DEADLINE = LocalDate.now().plusDays(10).toString();
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserTaskIdsCache userTaskIdsCache;
+
+    @Mock
+    private TaskCache taskCache;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskChangeService taskChangeService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<Task> savedTasks = new ArrayList<>();
+    private TaskImportService taskImportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        taskImportService = new TaskImportService(
+                Jackson2ObjectMapperBuilder.json()
+                        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new TaskMapper(),
+                taskRepository, userRepository, userTaskIdsCache, taskCache, entityManager,
+                transactionManager, taskChangeService, executor);
+        when(userRepository.findExistingIds(any())).thenAnswer(invocation -> invocation
+                .<Collection<Long>>getArgument(0).stream().filter(id -> id == 7L).toList());
+        when(userRepository.getReferenceById(anyLong())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            return user;
+        });
+        when(taskRepository.saveAll(any())).thenAnswer(invocation -> {
+            for (Task task : invocation.<List<Task>>getArgument(0)) {
+                savedTasks.add(task);
+                task.setId((long) savedTasks.size());
+            }
+            return invocation.getArgument(0);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void importTasks_ShouldImportValidNdjsonLines_AndReportTheRestByLineNumber() throws IOException {
+        String body = task("First", 7) + "\n"
+                + "\n"
+                + "{\"title\":\"\",\"isCompleted\":false,\"deadlineDate\":\"" + DEADLINE
+                + "\",\"isImportant\":false,\"userId\":7}\n"
+                + "{not json\n"
+                + task("Stranger", 8) + "\n";
+
+        ImportReport report = taskImportService.importTasks(DataFormat.NDJSON, stream(body));
+
+        assertEquals(4, report.getProcessed());
+        assertEquals(1, report.getImported());
+        assertEquals(3, report.getFailed());
+        assertEquals(List.of(3, 4, 5), report.getErrors().stream().map(BulkItemResult::getIndex).toList());
+        assertEquals(List.of(400, 400, 404), report.getErrors().stream().map(BulkItemResult::getStatus).toList());
+        assertEquals("Заголовок не должен быть пустым!", report.getErrors().get(0).getError());
+        assertEquals("First", savedTasks.get(0).getTitle());
+        assertEquals(7L, savedTasks.get(0).getUser().getId());
+        verify(entityManager).clear();
+        verify(taskChangeService).recordSaved(List.of(1L));
+        verify(taskCache).remove(1L);
+        verify(userTaskIdsCache).remove(7L);
+    }
+
+    @Test
+    void importTasks_ShouldParseCsvWithQuotedFields() throws IOException {
+        String body = "\uFEFFtitle,content,isCompleted,deadlineDate,isImportant,userId\r\n"
+                + "\"Buy milk, bread\",\"Line one\nline \"\"two\"\"\",true," + DEADLINE + ",false,7\r\n"
+                + "Short row,1,2\r\n"
+                + "Plain,,false," + DEADLINE + ",true,7\r\n";
+
+        ImportReport report = taskImportService.importTasks(DataFormat.CSV, stream(body));
+
+        assertEquals(3, report.getProcessed());
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getErrors().get(0).getIndex());
+        Task first = savedTasks.get(0);
+        assertEquals("Buy milk, bread", first.getTitle());
+        assertEquals("Line one\nline \"two\"", first.getContent());
+        assertTrue(first.getIsCompleted());
+        assertEquals(LocalDate.parse(DEADLINE), first.getDeadlineDate());
+        assertNull(savedTasks.get(1).getContent());
+    }
+
+    @Test
+    void importTasks_ShouldWriteInBatches_AndLookUpEachUserOnce() throws IOException {
+        int rows = TaskImportService.BATCH_SIZE * 2 + 1;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            body.append(task("Task " + i, 7)).append('\n');
+        }
+
+        ImportReport report = taskImportService.importTasks(DataFormat.NDJSON, stream(body.toString()));
+
+        assertEquals(rows, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(rows, savedTasks.size());
+        verify(taskRepository, times(3)).saveAll(any());
+        verify(userRepository, times(1)).findExistingIds(any());
+    }
+
+    @Test
+    void importTasks_ShouldReportRowsOfFailedBatch_AndContinue() throws IOException {
+        doThrow(new IllegalStateException("constraint")).when(taskRepository).saveAll(any());
+
+        ImportReport report = taskImportService.importTasks(DataFormat.NDJSON,
+                stream(task("First", 7) + "\n" + task("Second", 7)));
+
+        assertEquals(0, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(500, report.getErrors().get(1).getStatus());
+        verify(taskCache, never()).remove(anyLong());
+        verify(userTaskIdsCache, never()).remove(anyLong());
+    }
+
+    @Test
+    void importTasks_ShouldWriteBatchesReadBeforeParseError_ThenRethrowIt() {
+        doAnswer(invocation -> {
+            Thread.sleep(200);
+            invocation.<List<Task>>getArgument(0).forEach(savedTasks::add);
+            return invocation.getArgument(0);
+        }).when(taskRepository).saveAll(any());
+        StringBuilder body = new StringBuilder("title,isCompleted,deadlineDate,isImportant,userId\n");
+        for (int i = 0; i < TaskImportService.BATCH_SIZE + 1; i++) {
+            body.append("Task ").append(i).append(",false,").append(DEADLINE).append(",true,7\n");
+        }
+        InputStream failing = new SequenceInputStream(stream(body.toString()), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThrows(IOException.class, () -> taskImportService.importTasks(DataFormat.CSV, failing));
+
+        assertEquals(TaskImportService.BATCH_SIZE, savedTasks.size());
+        verify(taskRepository).saveAll(any());
+    }
+
+    @Test
+    void importTasks_ShouldRejectOverlongNdjsonLine_AndContinue() throws IOException {
+        String body = "x".repeat(TaskImportService.MAX_RECORD_CHARS * 2) + "\n"
+                + task("After", 7) + "\n";
+
+        ImportReport report = taskImportService.importTasks(DataFormat.NDJSON, stream(body));
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getErrors().get(0).getIndex());
+        assertEquals(String.format(TaskImportService.RECORD_TOO_LONG,
+                TaskImportService.MAX_RECORD_CHARS), report.getErrors().get(0).getError());
+        assertEquals("After", savedTasks.get(0).getTitle());
+    }
+
+    @Test
+    void importTasks_ShouldRejectOverlongCsvRecord_AndResumeAtNextRecord() throws IOException {
+        String body = "title,isCompleted,deadlineDate,isImportant,userId\n"
+                + "\"" + "x".repeat(TaskImportService.MAX_RECORD_CHARS) + "\n\"\"tail\",false,"
+                + DEADLINE + ",true,7\n"
+                + "After,false," + DEADLINE + ",true,7\n";
+
+        ImportReport report = taskImportService.importTasks(DataFormat.CSV, stream(body));
+
+        assertEquals(2, report.getProcessed());
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getErrors().get(0).getIndex());
+        assertEquals(String.format(TaskImportService.RECORD_TOO_LONG,
+                TaskImportService.MAX_RECORD_CHARS), report.getErrors().get(0).getError());
+        assertEquals("After", savedTasks.get(0).getTitle());
+    }
+
+    @Test
+    void importTasks_ShouldFailOnOverlongCsvHeader() {
+        String body = "title," + "x".repeat(TaskImportService.MAX_RECORD_CHARS) + "\n";
+
+        InvalidInputException exception = assertThrows(InvalidInputException.class,
+                () -> taskImportService.importTasks(DataFormat.CSV, stream(body)));
+        assertTrue(exception.getMessage().startsWith("Строка 1: "));
+    }
+
+    private static String task(String title, long userId) {
+        return "{\"title\":\"" + title + "\",\"isCompleted\":false,\"deadlineDate\":\""
+                + DEADLINE + "\",\"isImportant\":true,\"userId\":" + userId + "}";
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
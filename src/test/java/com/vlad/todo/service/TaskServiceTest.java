@@ -1,26 +1,48 @@
 package com.vlad.todo.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.vlad.todo.cache.TaskCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.TaskDtoRequest;
 import com.vlad.todo.dto.TaskDtoResponse;
+import com.vlad.todo.dto.TaskFilter;
+import com.vlad.todo.dto.TaskPatchRequest;
 import com.vlad.todo.exception.InvalidInputException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.TaskMapper;
 import com.vlad.todo.model.Task;
 import com.vlad.todo.model.User;
 import com.vlad.todo.repository.TaskRepository;
 import com.vlad.todo.repository.UserRepository;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 class TaskServiceTest {
 
@@ -36,12 +58,29 @@ class TaskServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TaskCache taskCache;
+
+    @Mock
+    private UserTaskIdsCache userTaskIdsCache;
+
+    @Spy
+    private PageCursorCodec pageCursorCodec = new PageCursorCodec(2, 10);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private TaskChangeService taskChangeService;
+
     private Task task;
     private User user;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(taskCache.get(anyLong(), any())).thenAnswer(invocation -> invocation
+                .<Function<Long, TaskDtoResponse>>getArgument(1).apply(invocation.getArgument(0)));
         user = new User();
         user.setId(1L);
         task = new Task();
@@ -57,8 +96,7 @@ class TaskServiceTest {
     @Test
     void findAllTasks_ReturnsTaskDtoResponseList() {
         TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
-        when(taskRepository.findAll()).thenReturn(Collections.singletonList(task));
-        when(taskMapper.toDto(task)).thenReturn(taskDtoResponse);
+        when(taskRepository.findAllDtos()).thenReturn(List.of(taskDtoResponse));
 
         var result = taskService.findAllTasks();
 
@@ -67,11 +105,55 @@ class TaskServiceTest {
     }
 
     @Test
-    void findTasksByUser_ReturnsTaskDtoResponseList() {
+    void findTasks_ShouldQueryRepositoryWithSpecification_InsteadOfLoadingAllTasks() {
         TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
-        when(taskRepository.findByUser(1L)).thenReturn(Collections.singletonList(task));
+        TaskFilter filter = new TaskFilter();
+        filter.setCompleted(false);
+        filter.setTitlePrefix("New");
+        when(taskRepository.findAll(ArgumentMatchers.<Specification<Task>>any(), any(Sort.class)))
+                .thenReturn(List.of(task));
         when(taskMapper.toDto(task)).thenReturn(taskDtoResponse);
 
+        List<TaskDtoResponse> result = taskService.findTasks(filter);
+
+        assertEquals(List.of(taskDtoResponse), result);
+        verify(taskRepository, never()).findAll();
+    }
+
+    @Test
+    void findTasks_ShouldRejectInvertedDeadlineRange() {
+        TaskFilter filter = new TaskFilter();
+        filter.setDeadlineFrom(LocalDate.of(2025, 5, 2));
+        filter.setDeadlineTo(LocalDate.of(2025, 5, 1));
+
+        assertThrows(InvalidInputException.class, () -> taskService.findTasks(filter));
+        verifyNoInteractions(taskRepository);
+    }
+
+    @Test
+    void findTasksPage_ShouldReturnCursor_WhenLookaheadRowIsPresent() {
+        Task next = new Task();
+        next.setId(2L);
+        TaskDtoResponse first = new TaskDtoResponse();
+        first.setId(1L);
+        TaskDtoResponse second = new TaskDtoResponse();
+        second.setId(2L);
+        when(taskRepository.findBy(ArgumentMatchers.<Specification<Task>>any(), any()))
+                .thenReturn(List.of(task, next));
+        when(taskMapper.toDto(task)).thenReturn(first);
+        when(taskMapper.toDto(next)).thenReturn(second);
+
+        PageResponse<TaskDtoResponse> page = taskService.findTasksPage(null, 1, new TaskFilter());
+
+        assertEquals(List.of(first), page.getItems());
+        assertEquals(1L, pageCursorCodec.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void findTasksByUser_ReturnsTaskDtoResponseList() {
+        TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
+        when(taskRepository.findDtosByUserId(1L)).thenReturn(List.of(taskDtoResponse));
+
         var result = taskService.findTasksByUser(1L);
 
         assertEquals(1, result.size());
@@ -81,8 +163,7 @@ class TaskServiceTest {
     @Test
     void findTaskById_ReturnsTaskDtoResponse() {
         TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
-        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
-        when(taskMapper.toDto(task)).thenReturn(taskDtoResponse);
+        when(taskRepository.findDtoById(1L)).thenReturn(Optional.of(taskDtoResponse));
 
         var result = taskService.findTaskById(1L);
 
@@ -91,7 +172,7 @@ class TaskServiceTest {
 
     @Test
     void findTaskById_ThrowsNotFoundException_WhenTaskNotFound() {
-        when(taskRepository.findById(1L)).thenReturn(Optional.empty());
+        when(taskRepository.findDtoById(1L)).thenReturn(Optional.empty());
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> {
             taskService.findTaskById(1L);
@@ -150,13 +231,16 @@ class TaskServiceTest {
         taskDtoRequest.setIsCompleted(false);
         taskDtoRequest.setContent("New Content");
         taskDtoRequest.setDeadlineDate(LocalDate.now());
-        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
-        when(taskMapper.toDto(task)).thenReturn(new TaskDtoResponse());
+        TaskDtoResponse updatedTask = taskDto(1L, 1L);
+        when(taskRepository.updatePartially(1L, "New Title", "New Content", false,
+                taskDtoRequest.getDeadlineDate(), false, null, null)).thenReturn(1);
+        when(taskRepository.findDtoById(1L)).thenReturn(Optional.of(updatedTask));
 
-        var result = taskService.updateTask(1L, taskDtoRequest);
+        var result = taskService.updateTask(1L, taskDtoRequest, null);
 
-        assertNotNull(result);
-        assertEquals("New Title", task.getTitle());
+        assertSame(updatedTask, result);
+        verify(taskCache).put(1L, updatedTask);
+        verify(taskRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -167,47 +251,319 @@ class TaskServiceTest {
         taskDtoRequest.setIsCompleted(null);
         taskDtoRequest.setIsCompleted(null);
         taskDtoRequest.setDeadlineDate(null);
+        when(taskRepository.updatePartially(1L, null, null, null, null, null, null, null)).thenReturn(1);
+        when(taskRepository.findDtoById(1L)).thenReturn(Optional.of(taskDto(1L, 1L)));
 
-        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
-        when(taskMapper.toDto(task)).thenReturn(new TaskDtoResponse());
-
-        var result = taskService.updateTask(1L, taskDtoRequest);
+        var result = taskService.updateTask(1L, taskDtoRequest, null);
 
         assertNotNull(result);
-        assertEquals("New Title", task.getTitle());
+        verify(userTaskIdsCache, never()).addTask(anyLong(), anyLong());
     }
 
     @Test
     void updateTask_ThrowsNotFoundException_WhenTaskNotFound() {
         TaskDtoRequest taskDtoRequest = new TaskDtoRequest();
-        when(taskRepository.findById(1L)).thenReturn(Optional.empty());
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> {
-            taskService.updateTask(1L, taskDtoRequest);
+            taskService.updateTask(1L, taskDtoRequest, null);
         });
 
         assertEquals("Задача с id 1 не найдена", exception.getMessage());
     }
 
+    @Test
+    void updateTask_ThrowsNotFoundException_WhenNewOwnerNotFound() {
+        TaskDtoRequest taskDtoRequest = new TaskDtoRequest();
+        taskDtoRequest.setUserId(9L);
+        when(taskRepository.findVersionById(1L)).thenReturn(Optional.of(3L));
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> taskService.updateTask(1L, taskDtoRequest, 3L));
+
+        assertEquals("Пользователь с id 9 не найден", exception.getMessage());
+    }
+
+    @Test
+    void updateTask_ThrowsPreconditionFailed_WhenVersionChanged() {
+        TaskDtoRequest taskDtoRequest = new TaskDtoRequest();
+        taskDtoRequest.setUserId(9L);
+        when(taskRepository.findVersionById(1L)).thenReturn(Optional.of(4L));
+
+        PreconditionFailedException exception = assertThrows(PreconditionFailedException.class,
+                () -> taskService.updateTask(1L, taskDtoRequest, 3L));
+
+        assertEquals("Задача с id 1 была изменена, текущая версия 4", exception.getMessage());
+        verify(taskRepository).updatePartially(1L, null, null, null, null, null, 9L, 3L);
+        verify(taskCache, never()).put(anyLong(), any());
+    }
+
+    @Test
+    void deleteTaskById_ThrowsPreconditionFailed_WhenVersionChanged() {
+        when(taskRepository.findVersionById(1L)).thenReturn(Optional.of(4L));
+
+        assertThrows(PreconditionFailedException.class, () -> taskService.deleteTaskById(1L, 3L));
+
+        verify(taskRepository).removeById(1L, 3L);
+        verify(taskCache, never()).remove(anyLong());
+    }
+
     @Test
     void deleteTaskById_Success() {
-        when(taskRepository.existsById(1L)).thenReturn(true);
+        when(taskRepository.removeById(1L, null)).thenReturn(1);
 
         assertDoesNotThrow(() -> {
-            taskService.deleteTaskById(1L);
+            taskService.deleteTaskById(1L, null);
         });
 
-        verify(taskRepository).deleteById(1L);
+        verify(taskRepository).removeById(1L, null);
+        verify(taskRepository, never()).existsById(anyLong());
     }
 
     @Test
     void deleteTaskById_ThrowsNotFoundException_WhenTaskNotFound() {
-        when(taskRepository.existsById(1L)).thenReturn(false);
+        when(taskRepository.removeById(1L, null)).thenReturn(0);
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> {
-            taskService.deleteTaskById(1L);
+            taskService.deleteTaskById(1L, null);
         });
 
         assertEquals("Задача с id 1 не найдена", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findTaskById_ReturnsCachedTask_WithoutQueryingRepository() {
+        TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
+        doReturn(taskDtoResponse).when(taskCache).get(eq(1L), any());
+
+        var result = taskService.findTaskById(1L);
+
+        assertSame(taskDtoResponse, result);
+        verify(taskRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void findTasksByUser_ReturnsCachedTasks_WithoutQueryingRepository() {
+        TaskDtoResponse first = taskDto(1L, 1L);
+        TaskDtoResponse second = taskDto(2L, 1L);
+        when(userTaskIdsCache.get(1L)).thenReturn(List.of(1L, 2L));
+        when(taskCache.get(1L)).thenReturn(first);
+        when(taskCache.get(2L)).thenReturn(second);
+
+        var result = taskService.findTasksByUser(1L);
+
+        assertEquals(List.of(first, second), result);
+        verify(taskRepository, never()).findDtosByUserId(anyLong());
+        verify(taskRepository, never()).findDtosByIds(any());
+    }
+
+    @Test
+    void findTasksByUser_LoadsOnlyTasksMissingFromCache() {
+        TaskDtoResponse cached = taskDto(2L, 1L);
+        TaskDtoResponse loaded = taskDto(1L, 1L);
+        when(userTaskIdsCache.get(1L)).thenReturn(List.of(2L, 1L));
+        when(taskCache.get(2L)).thenReturn(cached);
+        when(taskRepository.findDtosByIds(List.of(1L))).thenReturn(List.of(loaded));
+
+        var result = taskService.findTasksByUser(1L);
+
+        assertEquals(List.of(cached, loaded), result);
+        verify(taskCache).put(1L, loaded);
+        verify(taskRepository, never()).findDtosByUserId(anyLong());
+    }
+
+    @Test
+    void findTasksByUser_CachesTaskIds_WhenListIsNotCached() {
+        TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
+        taskDtoResponse.setId(1L);
+        when(taskRepository.findDtosByUserId(1L)).thenReturn(List.of(taskDtoResponse));
+
+        taskService.findTasksByUser(1L);
+
+        verify(taskCache).put(1L, taskDtoResponse);
+        verify(userTaskIdsCache).putTaskIds(1L, List.of(1L));
+    }
+
+    @Test
+    void saveTask_AddsTaskIdToUserList() {
+        TaskDtoRequest taskDtoRequest = new TaskDtoRequest();
+        taskDtoRequest.setUserId(1L);
+        TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
+        when(userRepository.findById(Long.valueOf(1L))).thenReturn(Optional.of(user));
+        when(taskMapper.toEntity(taskDtoRequest)).thenReturn(task);
+        when(taskMapper.toDto(task)).thenReturn(taskDtoResponse);
+
+        taskService.saveTask(taskDtoRequest);
+
+        verify(taskCache).put(1L, taskDtoResponse);
+        verify(userTaskIdsCache).addTask(1L, 1L);
+    }
+
+    @Test
+    void updateTask_MovesTaskIdBetweenUserLists_WhenUserChanges() {
+        TaskDtoRequest taskDtoRequest = new TaskDtoRequest();
+        taskDtoRequest.setUserId(2L);
+        when(taskRepository.updatePartially(1L, null, null, null, null, null, 2L, null)).thenReturn(1);
+        when(taskRepository.findDtoById(1L)).thenReturn(Optional.of(taskDto(1L, 2L)));
+        when(taskCache.get(1L)).thenReturn(taskDto(1L, 1L));
+
+        taskService.updateTask(1L, taskDtoRequest, null);
+
+        verify(userTaskIdsCache).removeTask(1L, 1L);
+        verify(userTaskIdsCache).addTask(2L, 1L);
+        verify(taskChangeService).recordMoveAway(1L, 2L);
+        verify(taskChangeService).recordSaved(List.of(1L));
+    }
+
+    @Test
+    void findTasksByUser_ReloadsList_WhenCachedTaskMovedToAnotherUser() {
+        TaskDtoResponse moved = taskDto(1L, 2L);
+        when(userTaskIdsCache.get(1L)).thenReturn(List.of(1L));
+        when(taskCache.get(1L)).thenReturn(moved);
+        when(taskRepository.findDtosByUserId(1L)).thenReturn(List.of());
+
+        var result = taskService.findTasksByUser(1L);
+
+        assertTrue(result.isEmpty());
+        verify(userTaskIdsCache).putTaskIds(1L, List.of());
+    }
+
+    @Test
+    void deleteTaskById_RemovesTaskFromCaches() {
+        TaskDtoResponse cachedTask = new TaskDtoResponse();
+        cachedTask.setUserId(1L);
+        when(taskRepository.removeById(1L, null)).thenReturn(1);
+        when(taskCache.remove(1L)).thenReturn(cachedTask);
+
+        taskService.deleteTaskById(1L, null);
+
+        verify(userTaskIdsCache).removeTask(1L, 1L);
+    }
+
+    @Test
+    void createTasks_ShouldResolveUsersInOneQuery_AndReportRowsIndividually() {
+        TaskDtoRequest valid = bulkTaskRequest("Valid", 1L);
+        TaskDtoRequest blankTitle = bulkTaskRequest("", 1L);
+        TaskDtoRequest unknownUser = bulkTaskRequest("Unknown user", 9L);
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(taskMapper.toEntity(valid)).thenReturn(task);
+        TaskDtoResponse created = new TaskDtoResponse();
+        created.setId(1L);
+        created.setUserId(1L);
+        when(taskMapper.toDto(task)).thenReturn(created);
+
+        List<BulkItemResult<TaskDtoResponse>> results =
+                taskService.createTasks(List.of(valid, blankTitle, unknownUser));
+
+        assertEquals(List.of(201, 400, 404),
+                results.stream().map(BulkItemResult::getStatus).toList());
+        assertSame(created, results.get(0).getItem());
+        assertSame(user, task.getUser());
+        verify(userRepository).findExistingIds(Set.of(1L, 9L));
+        verify(userRepository, never()).findById(any());
+        verify(taskRepository).saveAll(List.of(task));
+        verify(taskCache).put(1L, created);
+        verify(userTaskIdsCache).addTask(1L, 1L);
+    }
+
+    @Test
+    void updateTasks_ShouldPatchLoadedTasks_AndMoveOwnerInCache() {
+        User newOwner = new User();
+        newOwner.setId(2L);
+        TaskPatchRequest patch = new TaskPatchRequest();
+        patch.setId(1L);
+        patch.setTitle("Renamed");
+        patch.setUserId(2L);
+        TaskPatchRequest repeated = new TaskPatchRequest();
+        repeated.setId(1L);
+        TaskPatchRequest missing = new TaskPatchRequest();
+        missing.setId(5L);
+        when(taskRepository.findAllById(Set.of(1L, 5L))).thenReturn(List.of(task));
+        when(userRepository.findExistingIds(Set.of(2L))).thenReturn(List.of(2L));
+        when(userRepository.getReferenceById(2L)).thenReturn(newOwner);
+        TaskDtoResponse updated = new TaskDtoResponse();
+        updated.setId(1L);
+        updated.setUserId(2L);
+        when(taskMapper.toDto(task)).thenReturn(updated);
+        List<Long> ownersAtTombstone = new ArrayList<>();
+        doAnswer(invocation -> ownersAtTombstone.add(task.getUser().getId()))
+                .when(taskChangeService).recordTombstones(List.of(1L));
+
+        List<BulkItemResult<TaskDtoResponse>> results =
+                taskService.updateTasks(List.of(patch, repeated, missing));
+
+        assertEquals(List.of(200, 409, 404),
+                results.stream().map(BulkItemResult::getStatus).toList());
+        assertEquals("Renamed", task.getTitle());
+        assertSame(newOwner, task.getUser());
+        verify(taskRepository).flush();
+        verify(taskRepository, never()).save(any());
+        verify(taskCache).put(1L, updated);
+        verify(userTaskIdsCache).removeTask(1L, 1L);
+        verify(userTaskIdsCache).addTask(2L, 1L);
+        assertEquals(List.of(1L), ownersAtTombstone);
+        verify(taskChangeService).recordSaved(List.of(1L));
+    }
+
+    @Test
+    void updateTasks_ShouldRejectItemWithStaleVersion() {
+        task.setVersion(3);
+        TaskPatchRequest stale = new TaskPatchRequest();
+        stale.setId(1L);
+        stale.setTitle("Renamed");
+        stale.setVersion(2L);
+        when(taskRepository.findAllById(Set.of(1L))).thenReturn(List.of(task));
+
+        List<BulkItemResult<TaskDtoResponse>> results = taskService.updateTasks(List.of(stale));
+
+        assertEquals(412, results.get(0).getStatus());
+        assertEquals(String.format(TaskService.TASK_VERSION_CHANGED, 1L, 3L),
+                results.get(0).getError());
+        assertNotEquals("Renamed", task.getTitle());
+        verify(taskCache, never()).put(anyLong(), any());
+    }
+
+    @Test
+    void deleteTasks_ShouldDeleteExistingIdsInOneStatement() {
+        TaskDtoResponse existing = new TaskDtoResponse();
+        existing.setId(1L);
+        existing.setUserId(1L);
+        when(taskRepository.findDtosByIds(Set.of(1L, 2L))).thenReturn(List.of(existing));
+
+        List<BulkItemResult<Long>> results = taskService.deleteTasks(Arrays.asList(1L, 2L, 1L, 0L));
+
+        assertEquals(List.of(200, 404, 409, 400),
+                results.stream().map(BulkItemResult::getStatus).toList());
+        InOrder inOrder = inOrder(taskChangeService, taskRepository);
+        inOrder.verify(taskChangeService).recordTombstones(Set.of(1L));
+        inOrder.verify(taskRepository).deleteAllByIdInBatch(Set.of(1L));
+        verify(taskRepository, never()).deleteById(anyLong());
+        verify(taskCache).remove(1L);
+        verify(userTaskIdsCache).removeTask(1L, 1L);
+    }
+
+    @Test
+    void bulkOperations_ShouldRejectEmptyOrOversizedRequests() {
+        assertThrows(InvalidInputException.class, () -> taskService.deleteTasks(List.of()));
+        List<Long> tooMany = Collections.nCopies(TaskService.BULK_MAX_ITEMS + 1, 1L);
+        assertThrows(InvalidInputException.class, () -> taskService.deleteTasks(tooMany));
+        verifyNoInteractions(taskRepository);
+    }
+
+    private static TaskDtoRequest bulkTaskRequest(String title, long userId) {
+        TaskDtoRequest request = new TaskDtoRequest();
+        request.setTitle(title);
+        request.setIsCompleted(false);
+        request.setIsImportant(false);
+        request.setDeadlineDate(LocalDate.now().plusDays(7));
+        request.setUserId(userId);
+        return request;
+    }
+
+    private static TaskDtoResponse taskDto(long id, long userId) {
+        TaskDtoResponse taskDtoResponse = new TaskDtoResponse();
+        taskDtoResponse.setId(id);
+        taskDtoResponse.setUserId(userId);
+        return taskDtoResponse;
+    }
+}
@@ -2,28 +2,50 @@ package com.vlad.todo.service;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.vlad.todo.cache.CachedGroup;
+import com.vlad.todo.cache.GroupCache;
+import com.vlad.todo.cache.TaskCache;
 import com.vlad.todo.cache.UserCache;
+import com.vlad.todo.cache.UserTaskIdsCache;
+import com.vlad.todo.dto.BulkItemResult;
+import com.vlad.todo.dto.PageResponse;
 import com.vlad.todo.dto.UserDtoRequest;
 import com.vlad.todo.dto.UserDtoResponse;
 import com.vlad.todo.exception.AlreadyExistsException;
 import com.vlad.todo.exception.NotFoundException;
+import com.vlad.todo.exception.PreconditionFailedException;
 import com.vlad.todo.mapper.UserMapper;
-import com.vlad.todo.model.Group;
 import com.vlad.todo.model.User;
 import com.vlad.todo.repository.GroupRepository;
+import com.vlad.todo.repository.TaskRepository;
 import com.vlad.todo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 class UserServiceTest {
 
@@ -39,9 +61,33 @@ class UserServiceTest {
     @Mock
     private GroupRepository groupRepository;
 
+    @Mock
+    private TaskRepository taskRepository;
+
     @Mock
     private UserCache userCache;
 
+    @Mock
+    private TaskCache taskCache;
+
+    @Mock
+    private UserTaskIdsCache userTaskIdsCache;
+
+    @Mock
+    private GroupCache groupCache;
+
+    @Spy
+    private PageCursorCodec pageCursorCodec = new PageCursorCodec(2, 10);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TaskChangeService taskChangeService;
+
     private User existingUser;
     private UserDtoRequest userDtoRequest;
     private UserDtoResponse userDtoResponse;
@@ -49,6 +95,8 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(userCache.get(anyLong(), any())).thenAnswer(invocation -> invocation
+                .<Function<Long, UserDtoResponse>>getArgument(1).apply(invocation.getArgument(0)));
         existingUser = new User();
         existingUser.setId(1L);
         existingUser.setFirstName("Vlad");
@@ -56,7 +104,7 @@ class UserServiceTest {
         existingUser.setEmail("vlad@gmail.com");
         existingUser.setPhone("+1234567890");
         existingUser.setTasks(new ArrayList<>());
-        existingUser.setGroups(new ArrayList<>());
+        existingUser.setGroups(new HashSet<>());
         userDtoRequest = new UserDtoRequest();
         userDtoRequest.setFirstName("Vlad");
         userDtoRequest.setLastName("Shcherbo");
@@ -72,18 +120,38 @@ class UserServiceTest {
 
     @Test
     void findAll_ShouldReturnListOfUsers() {
-        when(userRepository.findAll()).thenReturn(Arrays.asList(existingUser));
-        when(userMapper.toDto(existingUser)).thenReturn(userDtoResponse);
+        when(userRepository.findAllDtos()).thenReturn(List.of(userDtoResponse));
 
         List<UserDtoResponse> users = userService.findAll();
         assertEquals(1, users.size());
         assertEquals(userDtoResponse, users.get(0));
     }
 
+    @Test
+    void findPage_ShouldReturnCursorToNextPage_WhenMoreRowsExist() {
+        UserDtoResponse secondDto = new UserDtoResponse();
+        secondDto.setId(2L);
+        UserDtoResponse thirdDto = new UserDtoResponse();
+        thirdDto.setId(3L);
+        userDtoResponse.setId(1L);
+        when(userRepository.findDtoPageAfter(eq(0L), any()))
+                .thenReturn(List.of(userDtoResponse, secondDto, thirdDto));
+        when(userRepository.findDtoPageAfter(eq(2L), any())).thenReturn(List.of(thirdDto));
+
+        PageResponse<UserDtoResponse> first = userService.findPage(null, null);
+        assertEquals(List.of(userDtoResponse, secondDto), first.getItems());
+        assertNotNull(first.getNextCursor());
+
+        PageResponse<UserDtoResponse> last = userService.findPage(first.getNextCursor(), null);
+        assertEquals(List.of(thirdDto), last.getItems());
+        assertNull(last.getNextCursor());
+        verify(userRepository).findDtoPageAfter(0L, pageCursorCodec.lookahead(2));
+        verify(userRepository, never()).findAll();
+    }
+
     @Test
     void findById_ShouldReturnUser_WhenUserExists() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(existingUser));
-        when(userMapper.toDto(existingUser)).thenReturn(userDtoResponse);
+        when(userRepository.findDtoById(anyLong())).thenReturn(Optional.of(userDtoResponse));
 
         UserDtoResponse result = userService.findById(1L);
         assertEquals(userDtoResponse, result);
@@ -91,7 +159,7 @@ class UserServiceTest {
 
     @Test
     void findById_ShouldThrowNotFoundException_WhenUserDoesNotExist() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(userRepository.findDtoById(anyLong())).thenReturn(Optional.empty());
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.findById(1L));
         assertEquals("Пользователь с id 1 не найден", exception.getMessage());
@@ -99,10 +167,65 @@ class UserServiceTest {
 
     @Test
     void findById_ShouldReturnUserFromCache() {
-        when(userCache.get(anyLong())).thenReturn(userDtoResponse);
+        doReturn(userDtoResponse).when(userCache).get(eq(1L), any());
 
         UserDtoResponse result = userService.findById(1L);
         assertEquals(userDtoResponse, result);
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void findById_ShouldQueryRepositoryOnce_ForConcurrentMisses() throws Exception {
+        int threads = 8;
+        UserCache realCache = new UserCache(1 << 20, 0, 0, null, 0, 0, 0);
+        UserService service = new UserService(userMapper, userRepository, groupRepository,
+                taskRepository, realCache, taskCache, userTaskIdsCache, groupCache, pageCursorCodec,
+                validator, entityManager, taskChangeService);
+        when(userRepository.findDtoById(anyLong())).thenAnswer(invocation -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (realCache.getStats().getCoalescedLoads() < threads - 1
+                    && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return Optional.of(userDtoResponse);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<UserDtoResponse>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<UserDtoResponse> lookup = () -> {
+                    start.await();
+                    return service.findById(1L);
+                };
+                results.add(pool.submit(lookup));
+            }
+            start.countDown();
+            for (Future<UserDtoResponse> result : results) {
+                assertEquals(userDtoResponse, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(userRepository, times(1)).findDtoById(anyLong());
+        assertEquals(threads - 1, realCache.getStats().getCoalescedLoads());
+        assertEquals(userDtoResponse, realCache.get(1L));
+    }
+
+    @Test
+    void findById_ShouldNotQueryRepositoryAgain_ForRecentlyMissingId() {
+        UserCache realCache = new UserCache(1 << 20, 0, 0, null, 0, 100, 60_000);
+        UserService service = new UserService(userMapper, userRepository, groupRepository,
+                taskRepository, realCache, taskCache, userTaskIdsCache, groupCache, pageCursorCodec,
+                validator, entityManager, taskChangeService);
+        when(userRepository.findDtoById(anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> service.findById(5L));
+        assertThrows(NotFoundException.class, () -> service.findById(5L));
+
+        verify(userRepository, times(1)).findDtoById(anyLong());
     }
 
     @Test
@@ -136,13 +259,14 @@ class UserServiceTest {
 
     @Test
     void updateUser_ShouldUpdateAndReturnUser_WhenUserExists() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(existingUser));
-        when(userMapper.toDto(existingUser)).thenReturn(userDtoResponse);
+        when(userRepository.updatePartially(eq(1L), any(), any(), any(), any(), any())).thenReturn(1);
+        when(userRepository.findDtoById(1L)).thenReturn(Optional.of(userDtoResponse));
 
-        var updatedUser = userService.updateUser(1L, userDtoRequest);
+        var updatedUser = userService.updateUser(1L, userDtoRequest, null);
 
         assertEquals(userDtoResponse, updatedUser);
-        verify(userRepository).save(existingUser);
+        verify(userRepository).updatePartially(1L, userDtoRequest.getFirstName(),
+                userDtoRequest.getLastName(), userDtoRequest.getEmail(), userDtoRequest.getPhone(), null);
         verify(userCache).put(existingUser.getId(), userDtoResponse);
 
         userDtoRequest.setEmail(null);
@@ -150,9 +274,10 @@ class UserServiceTest {
         userDtoRequest.setLastName(null);
         userDtoRequest.setFirstName(null);
 
-        updatedUser = userService.updateUser(1L, userDtoRequest);
+        updatedUser = userService.updateUser(1L, userDtoRequest, null);
         assertEquals(userDtoResponse, updatedUser);
-        verify(userRepository, times(2)).save(existingUser);
+        verify(userRepository).updatePartially(1L, null, null, null, null, null);
+        verify(userRepository, never()).save(any());
         verify(userCache, times(2)).put(existingUser.getId(), userDtoResponse);
     }
 
@@ -160,7 +285,7 @@ class UserServiceTest {
     void removeUserFromGroup_ShouldThrowNotFoundException_WhenUserNotFound() {
         long userId = 1L;
         long groupId = 1L;
-        when(groupRepository.findById(groupId)).thenReturn(Optional.of(new Group()));
+        when(groupRepository.existsById(groupId)).thenReturn(true);
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.removeUserFromGroup(userId, groupId));
         assertEquals("Пользователь с id 1 не найден", exception.getMessage());
@@ -170,22 +295,22 @@ class UserServiceTest {
     void removeUserFromGroup_ShouldThrowNotFoundException_WhenGroupNotFound() {
         long userId = 1L;
         long groupId = 1L;
-        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        when(userRepository.existsById(userId)).thenReturn(true);
 
         NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.removeUserFromGroup(userId, groupId));
         assertEquals("Группа с id 1 не найдена", exception.getMessage());
     }
 
     @Test
-    void removeUserFromGroup_ShouldRemoveUser_WhenUserAndGroupExist() {
+    void removeUserFromGroup_ShouldDeleteSingleMembershipRow_WhenUserAndGroupExist() {
         long groupId = 1L;
-        Group group = mock(Group.class);
-        existingUser.setId(1L);
-        group.addUser(existingUser);
-        when(groupRepository.findById(groupId)).thenReturn(Optional.of(group));
-        when(userRepository.findById(existingUser.getId())).thenReturn(Optional.of(existingUser));
+        when(groupRepository.existsById(groupId)).thenReturn(true);
+        when(userRepository.existsById(existingUser.getId())).thenReturn(true);
+
         userService.removeUserFromGroup(existingUser.getId(), groupId);
-        verify(group).removeUser(existingUser);
+
+        verify(groupRepository).removeMembers(groupId, List.of(existingUser.getId()));
+        verify(groupRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -199,10 +324,7 @@ class UserServiceTest {
         userDtoResponse.setId(user.getId());
         userDtoResponse.setEmail(user.getEmail());
 
-        List<User> users = Arrays.asList(user);
-
-        when(userRepository.findUsersByGroupName(groupName)).thenReturn(users);
-        when(userMapper.toDto(user)).thenReturn(userDtoResponse);
+        when(userRepository.findDtosByGroupName(groupName)).thenReturn(List.of(userDtoResponse));
 
         List<UserDtoResponse> result = userService.findUsersByGroup(groupName);
 
@@ -214,7 +336,7 @@ class UserServiceTest {
     void findUsersByGroup_ShouldReturnEmptyList_WhenNoUsersExist() {
         String groupName = "TestGroup";
 
-        when(userRepository.findUsersByGroupName(groupName)).thenReturn(new ArrayList<>());
+        when(userRepository.findDtosByGroupName(groupName)).thenReturn(new ArrayList<>());
 
         List<UserDtoResponse> result = userService.findUsersByGroup(groupName);
 
@@ -223,51 +345,78 @@ class UserServiceTest {
 
     @Test
     void updateUser_ShouldThrowNotFoundException_WhenUserDoesNotExist() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(userRepository.updatePartially(anyLong(), any(), any(), any(), any(), any())).thenReturn(0);
 
-        NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.updateUser(1L, userDtoRequest));
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.updateUser(1L, userDtoRequest, null));
         assertEquals("Пользователь с id 1 не найден", exception.getMessage());
     }
 
     @Test
     void deleteUserById_ShouldDeleteUser_WhenUserExists() {
-        Group group = new Group();
-        group.setUsers(new ArrayList<>(List.of(existingUser)));
-
-        existingUser.setGroups(new ArrayList<>(List.of(group)));
-
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(existingUser));
+        when(userRepository.lockVersionById(1L)).thenReturn(Optional.of(0L));
+        when(userRepository.removeById(1L, null)).thenReturn(1);
+        when(taskRepository.findIdsByUserId(1L)).thenReturn(List.of(3L, 4L));
+
+        userService.deleteUserById(1L, null);
+
+        verify(groupRepository).removeMemberFromAllGroups(1L);
+        InOrder inOrder = inOrder(taskChangeService, taskRepository);
+        inOrder.verify(taskChangeService).recordTombstonesForUser(1L);
+        inOrder.verify(taskRepository).removeByUserId(1L);
+        verify(userRepository).removeById(1L, null);
+        verify(userRepository, never()).findById(anyLong());
+        verify(userCache).remove(1L);
+        verify(taskCache).remove(3L);
+        verify(taskCache).remove(4L);
+        verify(taskCache, never()).removeIf(any());
+        verify(userTaskIdsCache).remove(1L);
+    }
 
-        userService.deleteUserById(1L);
+    @Test
+    void updateUser_ShouldThrowPreconditionFailed_WhenVersionChanged() {
+        when(userRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
 
-        verify(userRepository).deleteById(1L);
-        verify(userCache).remove(1L);
+        PreconditionFailedException exception = assertThrows(PreconditionFailedException.class,
+                () -> userService.updateUser(1L, userDtoRequest, 4L));
 
-        assertFalse(group.getUsers().contains(existingUser), "Пользователь должен быть удалён из группы");
+        assertEquals("Пользователь с id 1 был изменен, текущая версия 5", exception.getMessage());
+        verify(userCache, never()).put(anyLong(), any());
     }
 
     @Test
     void deleteUserById_ShouldThrowNotFoundException_WhenUserDoesNotExist() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(userRepository.lockVersionById(1L)).thenReturn(Optional.empty());
 
-        NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.deleteUserById(1L));
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> userService.deleteUserById(1L, null));
         assertEquals("Пользователь с id 1 не найден", exception.getMessage());
+        verifyNoInteractions(groupRepository, taskChangeService, taskRepository);
+        verify(userRepository, never()).removeById(anyLong(), any());
+    }
+
+    @Test
+    void deleteUserById_ShouldThrowPreconditionFailed_BeforeAnyBulkDelete() {
+        when(userRepository.lockVersionById(1L)).thenReturn(Optional.of(5L));
+
+        PreconditionFailedException exception = assertThrows(PreconditionFailedException.class,
+                () -> userService.deleteUserById(1L, 4L));
+
+        assertEquals("Пользователь с id 1 был изменен, текущая версия 5", exception.getMessage());
+        verifyNoInteractions(groupRepository, taskChangeService, taskRepository);
+        verify(userRepository, never()).removeById(anyLong(), any());
     }
 
 
     @Test
-    void addUserToGroup_ShouldAddUser_WhenUserAndGroupExist() {
+    void addUserToGroup_ShouldInsertSingleMembershipRow_WhenUserAndGroupExist() {
         long userId = existingUser.getId();
         long groupId = 1L;
-        Group group = mock(Group.class);
-
-        when(groupRepository.findById(groupId)).thenReturn(Optional.of(group));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
+        when(groupRepository.existsById(groupId)).thenReturn(true);
+        when(userRepository.existsById(userId)).thenReturn(true);
 
         userService.addUserToGroup(userId, groupId);
 
-        verify(group).addUser(existingUser);
-        verify(groupRepository).save(group);
+        verify(groupRepository).addMembers(groupId, List.of(userId));
+        verify(groupRepository, never()).save(any());
     }
 
     @Test
@@ -275,8 +424,8 @@ class UserServiceTest {
         long userId = existingUser.getId();
         long groupId = 1L;
 
-        when(groupRepository.findById(groupId)).thenReturn(Optional.empty());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
+        when(groupRepository.existsById(groupId)).thenReturn(false);
+        when(userRepository.existsById(userId)).thenReturn(true);
 
         assertThrows(NotFoundException.class, () -> userService.addUserToGroup(userId, groupId));
     }
@@ -285,43 +434,152 @@ class UserServiceTest {
     void addUserToGroup_ShouldThrowNotFoundException_WhenUserDoesNotExist() {
         long userId = existingUser.getId();
         long groupId = 1L;
-        Group group = mock(Group.class);
-
-        when(groupRepository.findById(groupId)).thenReturn(Optional.of(group));
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(groupRepository.existsById(groupId)).thenReturn(true);
+        when(userRepository.existsById(userId)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> userService.addUserToGroup(userId, groupId));
+        verify(groupRepository, never()).addMembers(anyLong(), any());
     }
 
     @Test
-    void saveAll_ShouldSaveListOfUsers() {
-        List<UserDtoRequest> requests = Arrays.asList(userDtoRequest);
-        when(userRepository.existsByEmail(any())).thenReturn(false);
-        when(userRepository.existsByPhone(any())).thenReturn(false);
+    void saveAll_ShouldInsertInBatch_AndReportCreatedRows() {
+        List<UserDtoRequest> requests = List.of(userDtoRequest);
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of());
+        when(userRepository.findExistingPhones(any())).thenReturn(List.of());
         when(userMapper.toEntity(userDtoRequest)).thenReturn(existingUser);
-        when(userRepository.save(existingUser)).thenReturn(existingUser);
         when(userMapper.toDto(existingUser)).thenReturn(userDtoResponse);
 
-        List<UserDtoResponse> results = userService.saveAll(requests);
-        assertEquals(1, results.size());
-        assertEquals(userDtoResponse, results.get(0));
+        List<BulkItemResult<UserDtoResponse>> results = userService.saveAll(requests);
+
+        assertEquals(List.of(BulkItemResult.success(0, 201, userDtoResponse)), results);
+        verify(userRepository).saveAll(List.of(existingUser));
+        verify(userRepository).flush();
+        verify(entityManager).clear();
+        verify(userCache).put(existingUser.getId(), userDtoResponse);
+        verify(userRepository, never()).existsByEmail(any());
+        verify(userRepository, never()).save(any());
     }
 
     @Test
-    void saveAll_ShouldThrowAlreadyExistsException_WhenUserExistsByEmail() {
-        List<UserDtoRequest> requests = Arrays.asList(userDtoRequest);
-        when(userRepository.existsByEmail(any())).thenReturn(true);
+    void saveAll_ShouldReportConflict_WhenUserExistsByEmail() {
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of("vlad@gmail.com"));
+        when(userRepository.findExistingPhones(any())).thenReturn(List.of());
 
-        AlreadyExistsException exception = assertThrows(AlreadyExistsException.class, () -> userService.saveAll(requests));
-        assertEquals("Пользователь с такой-же почтой/телефоном уже существует", exception.getMessage());
+        List<BulkItemResult<UserDtoResponse>> results = userService.saveAll(List.of(userDtoRequest));
+
+        assertEquals(List.of(BulkItemResult.failure(0, 409, UserService.USER_ALREADY_EXISTS)),
+                results);
+        verify(userRepository, never()).saveAll(any());
     }
 
     @Test
-    void saveAll_ShouldThrowAlreadyExistsException_WhenUserExistsByPhone() {
-        List<UserDtoRequest> requests = Arrays.asList(userDtoRequest);
-        when(userRepository.existsByPhone(any())).thenReturn(true);
+    void saveAll_ShouldReportConflict_WhenUserExistsByPhone() {
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of());
+        when(userRepository.findExistingPhones(any())).thenReturn(List.of("+1234567890"));
 
-        AlreadyExistsException exception = assertThrows(AlreadyExistsException.class, () -> userService.saveAll(requests));
-        assertEquals("Пользователь с такой-же почтой/телефоном уже существует", exception.getMessage());
+        List<BulkItemResult<UserDtoResponse>> results = userService.saveAll(List.of(userDtoRequest));
+
+        assertEquals(409, results.get(0).getStatus());
+        assertEquals(UserService.USER_ALREADY_EXISTS, results.get(0).getError());
+        verify(userRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void saveAll_ShouldRejectInvalidAndRepeatedRows_AndInsertTheRest() {
+        UserDtoRequest invalid = new UserDtoRequest();
+        invalid.setEmail("not an email");
+        invalid.setPhone("+1234567891");
+        UserDtoRequest repeated = new UserDtoRequest();
+        repeated.setFirstName("Ivan");
+        repeated.setLastName("Ivanov");
+        repeated.setEmail(userDtoRequest.getEmail());
+        repeated.setPhone("+1234567892");
+        UserDtoRequest other = new UserDtoRequest();
+        other.setFirstName("Ivan");
+        other.setLastName("Ivanov");
+        other.setEmail("ivan@gmail.com");
+        other.setPhone("+1234567893");
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of());
+        when(userRepository.findExistingPhones(any())).thenReturn(List.of());
+        when(userMapper.toEntity(any())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setEmail(invocation.<UserDtoRequest>getArgument(0).getEmail());
+            return user;
+        });
+        when(userMapper.toDto(any())).thenAnswer(invocation -> {
+            UserDtoResponse response = new UserDtoResponse();
+            response.setEmail(invocation.<User>getArgument(0).getEmail());
+            return response;
+        });
+
+        List<BulkItemResult<UserDtoResponse>> results = userService.saveAll(
+                Arrays.asList(userDtoRequest, invalid, repeated, null, other));
+
+        assertEquals(List.of(201, 400, 409, 400, 201),
+                results.stream().map(BulkItemResult::getStatus).toList());
+        assertEquals(List.of(0, 1, 2, 3, 4),
+                results.stream().map(BulkItemResult::getIndex).toList());
+        assertEquals("ivan@gmail.com", results.get(4).getItem().getEmail());
+        assertTrue(results.get(1).getError().contains("Электронная почта задана неверно"));
+        assertEquals(UserService.USER_DUPLICATED_IN_REQUEST, results.get(2).getError());
+        verify(userRepository).findExistingEmails(
+                argThat(emails -> Set.copyOf(emails).equals(Set.of("vlad@gmail.com", "ivan@gmail.com"))));
+        verify(userRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void addUserToGroup_ShouldAddMemberToCachedGroup() {
+        when(groupRepository.existsById(2L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        userService.addUserToGroup(1L, 2L);
+
+        verify(groupCache).addMember(2L, 1L);
+    }
+
+    @Test
+    void removeUserFromGroup_ShouldRemoveMemberFromCachedGroup() {
+        when(groupRepository.existsById(2L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        userService.removeUserFromGroup(1L, 2L);
+
+        verify(groupCache).removeMember(2L, 1L);
+    }
+
+    @Test
+    void deleteUserById_ShouldRemoveUserFromCachedGroups() {
+        when(userRepository.lockVersionById(1L)).thenReturn(Optional.of(0L));
+        when(userRepository.removeById(1L, null)).thenReturn(1);
+        when(groupRepository.findGroupIdsByMember(1L)).thenReturn(List.of(2L));
+
+        userService.deleteUserById(1L, null);
+
+        verify(groupCache).removeMember(2L, 1L);
+    }
+
+    @Test
+    void findAllByIds_ShouldLoadOnlyUsersMissingFromCache_AndSkipDeletedOnes() {
+        UserDtoResponse cachedUser = new UserDtoResponse();
+        cachedUser.setId(2L);
+        when(userCache.get(2L)).thenReturn(cachedUser);
+        when(userRepository.findDtosByIds(List.of(1L, 3L))).thenReturn(List.of(userDtoResponse));
+
+        List<UserDtoResponse> result = userService.findAllByIds(List.of(1L, 2L, 3L));
+
+        assertEquals(List.of(userDtoResponse, cachedUser), result);
+        verify(userCache).put(1L, userDtoResponse);
+    }
+
+    @Test
+    void findUsersByGroup_ShouldResolveCachedMembers_WithoutJoinQuery() {
+        CachedGroup cachedGroup = new CachedGroup(2L, "TestGroup", "Description", 0L, Set.of(1L));
+        when(groupCache.getByName("TestGroup")).thenReturn(cachedGroup);
+        when(userCache.get(1L)).thenReturn(userDtoResponse);
+
+        List<UserDtoResponse> result = userService.findUsersByGroup("TestGroup");
+
+        assertEquals(List.of(userDtoResponse), result);
+        verify(userRepository, never()).findDtosByGroupName(any());
     }
-}
\ No newline at end of file
+}